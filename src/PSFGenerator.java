@@ -66,6 +66,7 @@ import ij.ImagePlus;
 import ij.gui.GUI;
 import matlab.Converter;
 import psf.PSF;
+import psf.RadialPSF;
 import psfgenerator.About;
 import psfgenerator.CollectionPSF;
 import psfgenerator.MainPanel;
@@ -162,7 +163,17 @@ public class PSFGenerator implements ActionListener, PoolResponder {
 		System.out.println("Computing " + panel.getSelectedPSFShortname());
 		panel.compute(ExecutionMode.MULTITHREAD_NO);
 		PSF psf = panel.getLastPSF();
-		return new PSF_Generator().createImagePlus(psf, panel.getSelectedType());
+		ImagePlus imp = new PSF_Generator().createImagePlus(psf, panel.getSelectedType());
+		if (imp != null && psf instanceof RadialPSF) {
+			// Aborted run, the completed planes are returned as a partial
+			// stack
+			int completed = ((RadialPSF) psf).getNumberOfCompletedPlanes();
+			if (completed < psf.nz) {
+				imp.setTitle(imp.getTitle() + " (partial " + completed + "/" + psf.nz + ")");
+				System.out.println(psf.getShortname() + ": " + completed + " / " + psf.nz + " planes completed before the abort");
+			}
+		}
+		return imp;
 	}
 
 	public void close() {
@@ -210,6 +221,17 @@ public class PSFGenerator implements ActionListener, PoolResponder {
 				IJ.log(element.toString());
 
 		}
+		else if (event.getJob() instanceof RadialPSF) {
+			// Aborted run, the completed planes are shown as a partial stack
+			RadialPSF psf = (RadialPSF) event.getJob();
+			int completed = psf.getNumberOfCompletedPlanes();
+			if (completed == 0 || psf.getData() == null)
+				return;
+			ImagePlus imp = new PSF_Generator().createImagePlus(psf, panel.getSelectedType());
+			imp.setTitle(imp.getTitle() + " (partial " + completed + "/" + psf.nz + ")");
+			imp.show();
+			System.out.println(psf.getShortname() + ": " + completed + " / " + psf.nz + " planes completed before the abort");
+		}
 	}
 
 	@Override
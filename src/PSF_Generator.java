@@ -66,6 +66,7 @@ import ij.process.FloatProcessor;
 import ij.process.ShortProcessor;
 import psf.Data3D;
 import psf.PSF;
+import psf.RadialPSF;
 import psfgenerator.About;
 import psfgenerator.CollectionPSF;
 import psfgenerator.MainPanel;
@@ -136,6 +137,17 @@ public class PSF_Generator implements PoolResponder, PlugIn, ActionListener {
 			for (StackTraceElement element : elements)
 				IJ.log(element.toString());
 		}
+		else if (event.getJob() instanceof RadialPSF) {
+			// Aborted run, the completed planes are shown as a partial stack
+			RadialPSF psf = (RadialPSF) event.getJob();
+			int completed = psf.getNumberOfCompletedPlanes();
+			if (completed == 0 || psf.getData() == null)
+				return;
+			ImagePlus imp = createImagePlus(psf, panel.getSelectedType());
+			imp.setTitle(imp.getTitle() + " (partial " + completed + "/" + psf.nz + ")");
+			display(psf, imp, panel.getSelectedLUT());
+			IJ.log(psf.getShortname() + ": " + completed + " / " + psf.nz + " planes completed before the abort");
+		}
 	}
 
 	@Override
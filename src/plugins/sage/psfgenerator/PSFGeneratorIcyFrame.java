@@ -75,6 +75,7 @@ import icy.type.DataType;
 import icy.type.collection.array.Array1DUtil;
 import psf.Data3D;
 import psf.PSF;
+import psf.RadialPSF;
 import psfgenerator.About;
 import psfgenerator.CollectionPSF;
 import psfgenerator.MainPanel;
@@ -143,6 +144,16 @@ public class PSFGeneratorIcyFrame extends IcyFrame implements IcyFrameListener,
 			System.out.println(event);
 			ex.printStackTrace();
 		}
+		else if (event.getJob() instanceof RadialPSF) {
+			// Aborted run, the completed planes are shown as a partial stack
+			RadialPSF psf = (RadialPSF) event.getJob();
+			int completed = psf.getNumberOfCompletedPlanes();
+			if (completed == 0 || psf.getData() == null)
+				return;
+			String name = psf.getShortname() + " (partial " + completed + "/" + psf.nz + ")";
+			display(psf, panel.getSelectedType(), name, panel.getSelectedLUT());
+			System.out.println(psf.getShortname() + ": " + completed + " / " + psf.nz + " planes completed before the abort");
+		}
 	}
 
 	@Override
@@ -0,0 +1,234 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+import java.util.ArrayList;
+
+/**
+ * Adaptive sampling of the radial profiles along the optical axis. A coarse
+ * subset of the planes is computed first; every interval between computed
+ * planes is tested at its middle plane, and bisected while the linear
+ * interpolation misses the middle by more than a tolerance, relative to the
+ * maximum of the planes. The other planes are reconstructed in the radial
+ * domain, on a common radial grid, by the cubic Lagrange interpolation
+ * through the two nearest computed planes on each side.
+ * 
+ * Used by RadialPSF when the axial interpolation is set, see
+ * setAxialInterpolation(); the planes are computed by
+ * RadialExecution.sampleAxially().
+ */
+public class AxialSampler {
+
+	private int					nz;
+	private double[]			radii;
+	private int					interpolation;
+	private double				tolerance;
+
+	// Computed profiles, and their values on the common grid
+	private RadialProfile[]		profiles;
+	private double[][]			values;
+
+	// Intervals whose middle plane is being computed
+	private ArrayList<int[]>	open	= new ArrayList<int[]>();
+
+	/**
+	 * Sampler of the planes 0 to nz-1, computed first every stride planes;
+	 * the radii in units of [pixels] and the interpolation of the
+	 * reconstructed profiles.
+	 */
+	public AxialSampler(int nz, int stride, double[] radii, int interpolation, double tolerance) {
+		this.nz = nz;
+		this.radii = radii;
+		this.interpolation = interpolation;
+		this.tolerance = tolerance;
+		profiles = new RadialProfile[nz];
+		values = new double[nz][];
+		stride = Math.max(1, stride);
+		int a = 0;
+		while (a < nz - 1) {
+			int b = Math.min(nz - 1, a + stride);
+			open.add(new int[] { a, b });
+			a = b;
+		}
+	}
+
+	/**
+	 * Planes of the first round: the coarse planes and the middles of their
+	 * intervals.
+	 */
+	public int[] getInitialPlanes() {
+		ArrayList<Integer> planes = new ArrayList<Integer>();
+		planes.add(0);
+		for (int[] interval : open)
+			planes.add(interval[1]);
+		ArrayList<int[]> tested = new ArrayList<int[]>();
+		for (int[] interval : open)
+			if (interval[1] - interval[0] >= 2) {
+				planes.add((interval[0] + interval[1]) / 2);
+				tested.add(interval);
+			}
+		open = tested;
+		return toArray(planes);
+	}
+
+	public synchronized void setProfile(int z, RadialProfile profile) {
+		double[] v = new double[radii.length];
+		profile.getValues(radii, v);
+		profiles[z] = profile;
+		values[z] = v;
+	}
+
+	/**
+	 * Tests the open intervals with their computed middle, and returns the
+	 * middles of the bisected intervals, to compute in the next round; empty
+	 * if the sampling is complete.
+	 */
+	public int[] refine() {
+		ArrayList<Integer> planes = new ArrayList<Integer>();
+		ArrayList<int[]> tested = new ArrayList<int[]>();
+		for (int[] interval : open) {
+			int a = interval[0];
+			int b = interval[1];
+			int m = (a + b) / 2;
+			if (getError(a, m, b) <= tolerance)
+				continue;
+			if (m - a >= 2) {
+				planes.add((a + m) / 2);
+				tested.add(new int[] { a, m });
+			}
+			if (b - m >= 2) {
+				planes.add((m + b) / 2);
+				tested.add(new int[] { m, b });
+			}
+		}
+		open = tested;
+		return toArray(planes);
+	}
+
+	public int getNumberOfComputedPlanes() {
+		int count = 0;
+		for (int z = 0; z < nz; z++)
+			if (profiles[z] != null)
+				count++;
+		return count;
+	}
+
+	/**
+	 * Profile of the plane z, computed or reconstructed from the nearest
+	 * computed planes; null if they are missing (aborted computation).
+	 */
+	public RadialProfile getProfile(int z) {
+		if (profiles[z] != null)
+			return profiles[z];
+		int a = z;
+		while (a > 0 && profiles[a] == null)
+			a--;
+		int b = z;
+		while (b < nz - 1 && profiles[b] == null)
+			b++;
+		if (profiles[a] == null || profiles[b] == null)
+			return null;
+		return new RadialProfile(radii, interpolate(z, getNodes(a, b, -1)), interpolation);
+	}
+
+	// Error of the interpolation at m without m, relative to the maximum
+	private double getError(int a, int m, int b) {
+		if (values[a] == null || values[m] == null || values[b] == null)
+			return 0.0;
+		int[] nodes = getNodes(a, b, m);
+		double[] h = interpolate(m, nodes);
+		double max = 0.0;
+		double error = 0.0;
+		for (int n = 0; n < radii.length; n++) {
+			error = Math.max(error, Math.abs(values[m][n] - h[n]));
+			max = Math.max(max, Math.abs(values[m][n]));
+			for (int i = 0; i < nodes.length; i++)
+				max = Math.max(max, Math.abs(values[nodes[i]][n]));
+		}
+		return (max > 0.0 ? error / max : 0.0);
+	}
+
+	// Computed planes a and b, with the nearest computed plane below a and
+	// above b if any, but the plane excluded
+	private int[] getNodes(int a, int b, int exclude) {
+		int below = a - 1;
+		while (below >= 0 && (values[below] == null || below == exclude))
+			below--;
+		int above = b + 1;
+		while (above < nz && (values[above] == null || above == exclude))
+			above++;
+		int[] nodes = new int[(a == b ? 1 : 2) + (below >= 0 ? 1 : 0) + (above < nz ? 1 : 0)];
+		int k = 0;
+		if (below >= 0)
+			nodes[k++] = below;
+		nodes[k++] = a;
+		if (b != a)
+			nodes[k++] = b;
+		if (above < nz)
+			nodes[k++] = above;
+		return nodes;
+	}
+
+	// Lagrange interpolation at z through the planes of the nodes
+	private double[] interpolate(int z, int[] nodes) {
+		double[] h = new double[radii.length];
+		for (int i = 0; i < nodes.length; i++) {
+			double w = 1.0;
+			for (int j = 0; j < nodes.length; j++)
+				if (j != i)
+					w *= (z - nodes[j]) / (double) (nodes[i] - nodes[j]);
+			for (int n = 0; n < radii.length; n++)
+				h[n] += w * values[nodes[i]][n];
+		}
+		return h;
+	}
+
+	private static int[] toArray(ArrayList<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = list.get(i);
+		return array;
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+package psf;
+
+import java.util.Random;
+
+import bilib.commons.math.bessel.Bessel;
+
+/**
+ * Benchmark of the Bessel functions J0 and J1 of FastBessel against the
+ * implementation of bilib: the direct approximations and the tabulated
+ * versions, on ARGUMENTS arguments drawn uniformly in [0, X_MAX] with a fixed
+ * seed. Every variant is run WARMUP times before ROUNDS timed rounds; the
+ * report gives the best time per call and the largest absolute deviation
+ * from bilib. The accuracy of the same variants is asserted by
+ * RadialValidation, against the integral representation.
+ * 
+ * Usage: java -cp PSFGenerator.jar psf.BesselBenchmark
+ */
+public class BesselBenchmark {
+
+	private static final int	ARGUMENTS	= 1 << 20;
+	private static final double	X_MAX		= 500.0;
+	private static final int	WARMUP		= 5;
+	private static final int	ROUNDS		= 10;
+
+	// Variants of the benchmark
+	private static final String[]	NAMES	= new String[] { "bilib J0", "bilib J1", "FastBessel J0", "FastBessel J1", "tabulated J0", "tabulated J1", "tabulated J0 (array)", "tabulated J1 (array)" };
+
+	public static void main(String[] args) {
+		Random random = new Random(1234);
+		double[] x = new double[ARGUMENTS];
+		for (int i = 0; i < ARGUMENTS; i++)
+			x[i] = X_MAX * random.nextDouble();
+		FastBessel table = FastBessel.getTable();
+		double[][] reference = new double[2][];
+		for (int v = 0; v < NAMES.length; v++) {
+			double[] out = new double[ARGUMENTS];
+			for (int w = 0; w < WARMUP; w++)
+				run(v, table, x, out);
+			long best = Long.MAX_VALUE;
+			for (int r = 0; r < ROUNDS; r++) {
+				long start = System.nanoTime();
+				run(v, table, x, out);
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			if (v < 2)
+				reference[v] = out;
+			double deviation = 0.0;
+			for (int i = 0; i < ARGUMENTS; i++)
+				deviation = Math.max(deviation, Math.abs(out[i] - reference[v % 2][i]));
+			System.out.println(String.format("%-22s %8.1f ns/call   max deviation %.2e", NAMES[v], (double) best / ARGUMENTS, deviation));
+		}
+	}
+
+	private static void run(int variant, FastBessel table, double[] x, double[] out) {
+		int n = x.length;
+		switch (variant) {
+		case 0:
+			for (int i = 0; i < n; i++)
+				out[i] = Bessel.J0(x[i]);
+			break;
+		case 1:
+			for (int i = 0; i < n; i++)
+				out[i] = Bessel.J1(x[i]);
+			break;
+		case 2:
+			for (int i = 0; i < n; i++)
+				out[i] = FastBessel.J0(x[i]);
+			break;
+		case 3:
+			for (int i = 0; i < n; i++)
+				out[i] = FastBessel.J1(x[i]);
+			break;
+		case 4:
+			for (int i = 0; i < n; i++)
+				out[i] = table.tabulatedJ0(x[i]);
+			break;
+		case 5:
+			for (int i = 0; i < n; i++)
+				out[i] = table.tabulatedJ1(x[i]);
+			break;
+		case 6:
+			table.tabulatedJ0(x, out, n);
+			break;
+		default:
+			table.tabulatedJ1(x, out, n);
+			break;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+package psf;
+
+/**
+ * Bessel kernel of the Kirchhoff diffraction integral sampled on a fixed
+ * composite Simpson grid. The kernel J_c(r * s(rho_j)) depends only on the
+ * radial distance r and on the node rho_j, not on the plane. It is computed
+ * once per run, by blocks of radii, and every block is multiplied by the
+ * pupil functions of all the planes (blocked matrix product).
+ * 
+ * The quadrature weights are included in the pupils, the result has the
+ * same scale as the Simpson approximation of KirchhoffDiffraction. The
+ * pupils of at most getPlanesPerBlock() planes are held at once, about
+ * MAX_PUPILS values.
+ */
+public class BesselKernel {
+
+	// Number of radii per block of the matrix product
+	public static final int	BLOCK			= 16;
+
+	// Smallest and largest number of sub-intervals of the grid
+	public static final int	MIN_INTERVALS	= 64;
+	public static final int	MAX_INTERVALS	= 16384;
+
+	// Largest number of pupil values held at once, 64 MB
+	public static final int	MAX_PUPILS		= 1 << 23;
+
+	private int				N;				// number of sub-intervals
+	private double[]		nodes;
+	private double[]		weights;
+	private double[]		scales;
+	private int				components;
+	private int[]			orders;
+	private double[]		componentWeights;
+
+	public BesselKernel(DiffractionIntegrand integrand, int N) {
+		this.N = N;
+		double a = integrand.getLowerLimit();
+		double b = integrand.getUpperLimit();
+		double del = (b - a) / N;
+		nodes = new double[N + 1];
+		weights = new double[N + 1];
+		scales = new double[N + 1];
+		for (int j = 0; j <= N; j++) {
+			nodes[j] = a + j * del;
+			weights[j] = (j == 0 || j == N ? 1.0 : (j % 2 == 1 ? 4.0 : 2.0)) * del;
+			scales[j] = integrand.getBesselScale(nodes[j]);
+		}
+		components = integrand.getComponents();
+		orders = new int[components];
+		componentWeights = new double[components];
+		for (int c = 0; c < components; c++) {
+			orders[c] = integrand.getOrder(c);
+			componentWeights[c] = integrand.getWeight(c);
+		}
+	}
+
+	/**
+	 * Number of sub-intervals required by the integrands, estimated from the
+	 * number of oscillations of the integrand: the Bessel kernel at the
+	 * largest radius and the total variation of the phase over all the
+	 * planes. Not limited to MAX_INTERVALS.
+	 */
+	public static double getRequiredIntervals(DiffractionIntegrand[] integrands, double rMax, int accuracy) {
+		double periods = 0.0;
+		for (DiffractionIntegrand integrand : integrands)
+			periods = Math.max(periods, integrand.getNumberOfPeriods(rMax));
+		int samples = (accuracy == 0 ? 32 : (accuracy == 1 ? 64 : 128));
+		double n = Math.ceil(periods * samples);
+		return (Double.isNaN(n) ? MIN_INTERVALS : Math.max(MIN_INTERVALS, n));
+	}
+
+	/**
+	 * Number of sub-intervals of the grid, the required number limited to
+	 * MAX_INTERVALS; the planes which require more are under-sampled.
+	 */
+	public static int getNumberOfIntervals(DiffractionIntegrand[] integrands, double rMax, int accuracy) {
+		int N = (int) Math.min(MAX_INTERVALS, getRequiredIntervals(integrands, rMax, accuracy));
+		return N + (N % 2);
+	}
+
+	public int getNumberOfIntervals() {
+		return N;
+	}
+
+	public int getNumberOfNodes() {
+		return N + 1;
+	}
+
+	/**
+	 * Number of planes whose pupils are held at once, at least one.
+	 */
+	public int getPlanesPerBlock() {
+		return Math.max(1, MAX_PUPILS / (2 * components * (N + 1)));
+	}
+
+	/**
+	 * Pupil function of one plane sampled at the nodes, quadrature weights
+	 * included. The real part of the component c is in pupil[2*c], the
+	 * imaginary part in pupil[2*c+1].
+	 */
+	public double[][] getPupil(DiffractionIntegrand integrand) {
+		double[][] pupil = new double[2 * components][N + 1];
+		double[] A = new double[components];
+		for (int j = 0; j <= N; j++) {
+			double W = integrand.getPhase(nodes[j]);
+			double cosW = Math.cos(W);
+			double sinW = Math.sin(W);
+			integrand.getAmplitude(nodes[j], A);
+			for (int c = 0; c < components; c++) {
+				pupil[2 * c][j] = weights[j] * A[c] * cosW;
+				pupil[2 * c + 1][j] = weights[j] * A[c] * sinW;
+			}
+		}
+		return pupil;
+	}
+
+	/**
+	 * Radial profiles h[z][n] of all the planes for the radii r[from] to
+	 * r[to-1]. The kernel of the block is computed once and reused for every
+	 * plane.
+	 */
+	public void multiply(double[] r, int from, int to, double[][][] pupils, double[][] h) {
+		int nb = to - from;
+		double[][][] J = new double[3][][];
+		for (int c = 0; c < components; c++)
+			if (J[orders[c]] == null)
+				J[orders[c]] = new double[nb][N + 1];
+
+		FastBessel bessel = FastBessel.getTable();
+		double[] x = new double[N + 1];
+		double[] j0 = new double[N + 1];
+		double[] j1 = new double[N + 1];
+		for (int n = 0; n < nb; n++) {
+			for (int j = 0; j <= N; j++)
+				x[j] = r[from + n] * scales[j];
+			bessel.tabulatedJ0(x, (J[0] != null ? J[0][n] : j0), N + 1);
+			if (J[1] != null || J[2] != null) {
+				bessel.tabulatedJ1(x, (J[1] != null ? J[1][n] : j1), N + 1);
+				if (J[2] != null)
+					FastBessel.J2(x, (J[0] != null ? J[0][n] : j0), (J[1] != null ? J[1][n] : j1), J[2][n], N + 1);
+			}
+		}
+
+		for (int z = 0; z < pupils.length; z++) {
+			double[][] pupil = pupils[z];
+			for (int n = 0; n < nb; n++) {
+				double I = 0.0;
+				for (int c = 0; c < components; c++) {
+					double[] kernel = J[orders[c]][n];
+					double[] re = pupil[2 * c];
+					double[] im = pupil[2 * c + 1];
+					double sumRe = 0.0;
+					double sumIm = 0.0;
+					for (int j = 0; j <= N; j++) {
+						sumRe += kernel[j] * re[j];
+						sumIm += kernel[j] * im[j];
+					}
+					I += componentWeights[c] * (sumRe * sumRe + sumIm * sumIm);
+				}
+				h[z][from + n] = I;
+			}
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+package psf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint of a run on disk. The radial profile of every completed plane
+ * is written in a directory named after a hash of the parameter key, so
+ * that a restarted run with the same parameters reads the completed planes
+ * instead of computing them again.
+ * 
+ * A file holds the parameter key, the plane, the interpolation and the
+ * samples of the profile, followed by the CRC32 of its content. It is
+ * written under a temporary name and renamed, so that a run killed while
+ * writing leaves no partial file; a file whose key or CRC does not match is
+ * ignored and the plane is computed again.
+ * 
+ * The key of a checkpoint includes NUMERICS, the version of the numerical
+ * methods. It has to be increased by any change of the quadratures, the
+ * integrands or the interpolation which changes the profiles, so that the
+ * checkpoints of a previous build are not reused.
+ */
+public class Checkpoint {
+
+	private static final int	MAGIC		= 0x50534643;	// "PSFC"
+	private static final int	VERSION		= 1;
+
+	// Version of the numerical methods which compute the profiles
+	public static final int		NUMERICS	= 7;
+
+	private String				key;
+	private File				directory;
+
+	public Checkpoint(String base, String key) {
+		this.key = key + " numerics=" + NUMERICS;
+		this.directory = new File(base, "psf-" + hash(this.key));
+	}
+
+	/**
+	 * Name of the directory of a parameter key: the CRC32 and the hash code
+	 * of the key, in hexadecimal.
+	 */
+	public static String hash(String key) {
+		CRC32 crc = new CRC32();
+		byte[] bytes = key.getBytes(Charset.forName("UTF-8"));
+		crc.update(bytes, 0, bytes.length);
+		return String.format("%08x%08x", crc.getValue(), key.hashCode());
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Profile of the plane z, or null if it has not been written or if the
+	 * file does not pass the integrity check.
+	 */
+	public RadialProfile load(int z) {
+		File file = getFile(z);
+		if (!file.isFile() || file.length() < 8 || file.length() > Integer.MAX_VALUE)
+			return null;
+		byte[] bytes = new byte[(int) file.length()];
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			int n = 0;
+			while (n < bytes.length) {
+				int read = in.read(bytes, n, bytes.length - n);
+				if (read < 0)
+					return null;
+				n += read;
+			}
+		}
+		catch (IOException ex) {
+			return null;
+		}
+		finally {
+			close(in);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 8);
+		DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+		try {
+			if (data.readInt() != MAGIC || data.readInt() != VERSION)
+				return null;
+			if (!key.equals(data.readUTF()) || data.readInt() != z)
+				return null;
+			int interpolation = data.readInt();
+			int n = data.readInt();
+			if (n < 2 || 16L * n + 8 > bytes.length)
+				return null;
+			double[] r = new double[n];
+			double[] h = new double[n];
+			for (int i = 0; i < n; i++)
+				r[i] = data.readDouble();
+			for (int i = 0; i < n; i++)
+				h[i] = data.readDouble();
+			if (data.readLong() != crc.getValue())
+				return null;
+			return new RadialProfile(r, h, interpolation);
+		}
+		catch (IOException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the profile of the plane z; false if it cannot be written.
+	 */
+	public boolean save(int z, RadialProfile profile) {
+		double[] r = profile.getRadii();
+		double[] h = profile.getValues();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * r.length + 256);
+		DataOutputStream data = new DataOutputStream(bytes);
+		try {
+			data.writeInt(MAGIC);
+			data.writeInt(VERSION);
+			data.writeUTF(key);
+			data.writeInt(z);
+			data.writeInt(profile.getInterpolation());
+			data.writeInt(r.length);
+			for (int i = 0; i < r.length; i++)
+				data.writeDouble(r[i]);
+			for (int i = 0; i < h.length; i++)
+				data.writeDouble(h[i]);
+			data.flush();
+			CRC32 crc = new CRC32();
+			crc.update(bytes.toByteArray(), 0, bytes.size());
+			data.writeLong(crc.getValue());
+			data.flush();
+		}
+		catch (IOException ex) {
+			return false;
+		}
+
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+			return false;
+		File file = getFile(z);
+		File temp = new File(directory, file.getName() + ".tmp");
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(temp);
+			bytes.writeTo(out);
+			out.getFD().sync();
+		}
+		catch (IOException ex) {
+			close(out);
+			temp.delete();
+			return false;
+		}
+		close(out);
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException ex) {
+			temp.delete();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Deletes the files of the checkpoint and its directory.
+	 */
+	public void clear() {
+		File[] files = directory.listFiles();
+		if (files != null)
+			for (File file : files)
+				if (file.getName().startsWith("plane"))
+					file.delete();
+		directory.delete();
+	}
+
+	private File getFile(int z) {
+		return new File(directory, String.format("plane%05d.ckpt", z));
+	}
+
+	private static void close(Closeable stream) {
+		if (stream == null)
+			return;
+		try {
+			stream.close();
+		}
+		catch (IOException ex) {
+		}
+	}
+}
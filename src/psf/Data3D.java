@@ -46,12 +46,14 @@ package psf;
 
 public class Data3D {
 
-	public double[][]	data;
+	// Planes of the volume, accessed through getPlane() and setPlane() since
+	// the subclasses may store them in another form
+	protected double[][]	data;
 
 	public int			nx;
 	public int			ny;
 	public int			nz;
-	private int			nxy;
+	protected int		nxy;
 
 	public Point3D		max		= new Point3D();
 	public Point3D		fwhm	= new Point3D();
@@ -66,10 +68,23 @@ public class Data3D {
 		data = new double[nz][nx * ny];
 	}
 
+	/**
+	 * Volume on the planes of data, without allocation; the subclasses which
+	 * store the planes in another form leave the planes of data to null.
+	 */
+	protected Data3D(int nx, int ny, int nz, double[][] data) {
+		this.nx = nx;
+		this.ny = ny;
+		this.nz = nz;
+		this.nxy = nx * ny;
+		this.data = data;
+	}
+
 	public byte[] createAsByte(int z) {
 		byte[] p = new byte[nxy];
+		double[] slice = getPlane(z);
 		for (int k = 0; k < nx * ny; k++) {
-			double v = data[z][k] * 255;
+			double v = slice[k] * 255;
 			p[k] = (byte) (v > 255 ? 255 : (v < 0 ? 0 : v));
 		}
 		return p;
@@ -77,8 +92,9 @@ public class Data3D {
 
 	public short[] createAsShort(int z) {
 		short[] p = new short[nxy];
+		double[] slice = getPlane(z);
 		for (int k = 0; k < nx * ny; k++) {
-			double v = data[z][k] * 65535;
+			double v = slice[k] * 65535;
 			p[k] = (short) (v > 65535 ? 65535 : (v < 0 ? 0 : v));
 		}
 		return p;
@@ -86,8 +102,9 @@ public class Data3D {
 
 	public float[] createAsFloat(int z) {
 		float[] p = new float[nxy];
+		double[] slice = getPlane(z);
 		for (int k = 0; k < nx * ny; k++) {
-			double v = data[z][k];
+			double v = slice[k];
 			p[k] = (float) (v);
 		}
 		return p;
@@ -95,26 +112,39 @@ public class Data3D {
 
 	public double[] createAsDouble(int z) {
 		double[] p = new double[nxy];
-		System.arraycopy(data[z], 0, p, 0, nxy);
+		System.arraycopy(getPlane(z), 0, p, 0, nxy);
 		return p;
 	}
 
 	public int[] getHistogram(int nbins) {
 		int histo[] = new int[nbins];
-		for (int i = 0; i < nx; i++)
-			for (int j = 0; j < ny; j++)
-				for (int k = 0; k < nz; k++) {
-					int v = (int) (data[k][i + nx * j] * nbins);
-					if (v >= 0)
-						histo[v]++;
-				}
+		for (int z = 0; z < nz; z++) {
+			double[] slice = getPlane(z);
+			for (int k = 0; k < nxy; k++) {
+				int v = (int) (slice[k] * nbins);
+				if (v >= 0)
+					histo[v]++;
+			}
+		}
 		return histo;
 	}
 
+	/**
+	 * Plane z, stored in full here: the modifications of the returned array
+	 * are kept. The subclasses may return a copy, see RadialData3D; the
+	 * modifications have then to be stored back by setPlane().
+	 */
 	public double[] getPlane(int z) {
 		return data[z];
 	}
 
+	/**
+	 * Value of the pixel k = x + nx * y of the plane z.
+	 */
+	public double getValue(int z, int k) {
+		return data[z][k];
+	}
+
 	public void setPlane(int z, double plane[]) {
 		data[z] = plane;
 	}
@@ -124,14 +154,14 @@ public class Data3D {
 	}
 
 	public void getXY(int z, double plane[]) {
-		System.arraycopy(data[z], 0, plane, 0, nxy);
+		System.arraycopy(getPlane(z), 0, plane, 0, nxy);
 	}
 
 	public void determineMaximumAndEnergy() {
 		max.value = -Double.MAX_VALUE;
 		energy = 0;
 		for (int z = 0; z < nz; z++) {
-			double[] slice = ((double[]) data[z]);
+			double[] slice = getPlane(z);
 			for (int k = 0; k < nxy; k++) {
 				energy += slice[k] * slice[k];
 				if (max.value < slice[k]) {
@@ -146,7 +176,7 @@ public class Data3D {
 
 	public double getMaximum(int z) {
 		double max = -Double.MAX_VALUE;
-		double[] slice = ((double[]) data[z]);
+		double[] slice = getPlane(z);
 		for (int k = 0; k < nxy; k++)
 			if (max < slice[k])
 				max = slice[k];
@@ -207,7 +237,7 @@ public class Data3D {
 		double norm = 0.0;
 		double[] slice;
 		for (int z = 0; z < nz; z++) {
-			slice = ((double[]) data[z]);
+			slice = getPlane(z);
 			for (int k = 0; k < nxy; k++)
 				norm += slice[k] * slice[k];
 		}
@@ -216,7 +246,7 @@ public class Data3D {
 
 	public double getNorm2(int z) {
 		double norm = 0.0;
-		double[] slice = ((double[]) data[z]);
+		double[] slice = getPlane(z);
 		for (int k = 0; k < nxy; k++)
 			norm += slice[k] * slice[k];
 		return norm;
@@ -226,29 +256,34 @@ public class Data3D {
 	 * Compute the lateral parameters for every plane.
 	 */
 	public double[][] getPlaneInformation() {
-		double sliceMaxValue;
-		double sliceEnergy;
-
-		double p[][] = new double[nz][4];
-		for (int z = 0; z < nz; z++) {
-			sliceMaxValue = getMaximum(z);
-			sliceEnergy = getNorm2(z);
-			p[z][0] = z;
-			p[z][1] = sliceMaxValue / max.value;
-			p[z][2] = sliceEnergy / energy;
-
-			double x0 = (nx - 1) / 2.0, y0 = (ny - 1) / 2.0;
-			double sum = 0.0, sigma2 = 0.0, value = 0.0;
-
-			for (int x = 0; x < nx; x++)
-			for (int y = 0; y < ny; y++) {
-				value = data[z][x + nx * y];
-				sum += value;
-				sigma2 += value * ((x - x0) * (x - x0) + (y - y0) * (y - y0));
-			}
+		double p[][] = new double[nz][];
+		for (int z = 0; z < nz; z++)
+			p[z] = getPlaneInformation(z);
+		return p;
+	}
 
-			p[z][3] = Math.sqrt(sigma2 / sum);
+	/**
+	 * Lateral parameters of the plane z: z, relative maximum, relative
+	 * energy and efficiency radius in units of [pixels].
+	 */
+	public double[] getPlaneInformation(int z) {
+		double p[] = new double[4];
+		p[0] = z;
+		p[1] = getMaximum(z) / max.value;
+		p[2] = getNorm2(z) / energy;
+
+		double x0 = (nx - 1) / 2.0, y0 = (ny - 1) / 2.0;
+		double sum = 0.0, sigma2 = 0.0, value = 0.0;
+
+		double[] slice = getPlane(z);
+		for (int x = 0; x < nx; x++)
+		for (int y = 0; y < ny; y++) {
+			value = slice[x + nx * y];
+			sum += value;
+			sigma2 += value * ((x - x0) * (x - x0) + (y - y0) * (y - y0));
 		}
+
+		p[3] = Math.sqrt(sigma2 / sum);
 		return p;
 	}
 
@@ -264,7 +299,7 @@ public class Data3D {
 		// X
 		value = max.value;
 		for(x=max.x; x<nx; x++) {
-			value = data[max.z][x + nx * max.y] ;
+			value = getValue(max.z, x + nx * max.y) ;
 			if (value < max.value * 0.5) {
 				break;
 			}
@@ -273,7 +308,7 @@ public class Data3D {
 		
 		value = max.value;
 		for(x=max.x; x<0; x--) {
-			value = data[max.z][x + nx * max.y] ;
+			value = getValue(max.z, x + nx * max.y) ;
 			if (value < max.value * 0.5) {
 				break;
 			}
@@ -283,7 +318,7 @@ public class Data3D {
 		// Y
 		value = max.value;
 		for(y=max.y; y<ny; y++) {
-			value = data[max.z][max.x + nx * y] ;
+			value = getValue(max.z, max.x + nx * y) ;
 			if (value < max.value * 0.5) {
 				break;
 			}
@@ -292,7 +327,7 @@ public class Data3D {
 		
 		value = max.value;
 		for(y=max.y; y<0; y--) {
-			value = data[max.z][max.x + nx * y] ;
+			value = getValue(max.z, max.x + nx * y) ;
 			if (value < max.value * 0.5) {
 				break;
 			}
@@ -302,7 +337,7 @@ public class Data3D {
 		// Z
 		value = max.value;
 		for(z=max.z; z<nz; z++) {
-			value = data[z][max.x + nx * max.y] ;
+			value = getValue(z, max.x + nx * max.y) ;
 			if (value < max.value * 0.5) {
 				break;
 			}
@@ -312,7 +347,7 @@ public class Data3D {
 		
 		value = max.value;
 		for(z=max.z; z<0; z--) {
-			value = data[z][x + nx * max.y] ;
+			value = getValue(z, x + nx * max.y) ;
 			if (value < max.value * 0.5) {
 				break;
 			}
@@ -327,6 +362,6 @@ public class Data3D {
 		for(z=z1; z<=Math.min(z2, nz-1); z++)
 		for(x=x1; x<=Math.min(x2, nx-1); x++)
 		for(y=y1; y<=Math.min(y2, ny-1); y++)
-			fwhm.value += data[z][x + nx * y];
+			fwhm.value += getValue(z, x + nx * y);
 	}
 }
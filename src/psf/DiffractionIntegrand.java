@@ -0,0 +1,221 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+/**
+ * Integrand of the Kirchhoff diffraction integral of a radially symmetric
+ * optical model. The integrand is a complex function of the integration
+ * parameter (rho or theta) for a given radial distance r of the detector. A
+ * scalar model has one complex component, a vectorial model has three (I0,
+ * I1, I2).
+ * 
+ * Every component is separable in a Bessel kernel which depends on r and a
+ * pupil function which does not:
+ * 
+ * I_c(rho, r) = J_c(r * s(rho)) * A_c(rho) * exp(i * W(rho))
+ * 
+ * where s(rho) is the Bessel scale, A_c(rho) the real amplitude and W(rho)
+ * the phase aberration. The pupil function is the only part that depends on
+ * the plane.
+ */
+public abstract class DiffractionIntegrand {
+
+	// Number of levels of the dyadic grid of the run tables: the node i of
+	// the grid is a + i * (b - a) / 2^TABLE_LEVELS
+	public static final int	TABLE_LEVELS	= 12;
+
+	// Number of complex components of the integrand
+	protected int			components	= 1;
+
+	// Weight of every component in the intensity: |I0|^2 + 2|I1|^2 + |I2|^2
+	protected double[]		weights		= new double[] { 1.0 };
+
+	// Order of the Bessel function of every component
+	protected int[]			orders		= new int[] { 0 };
+
+	// Tabulated Bessel functions, shared by all the integrands
+	protected FastBessel	bessel		= FastBessel.getTable();
+
+	// Workspace of the amplitudes, an integrand is used by a single thread
+	private double[]		amplitude	= new double[3];
+
+	public int getComponents() {
+		return components;
+	}
+
+	public double getWeight(int component) {
+		return weights[component];
+	}
+
+	public int getOrder(int component) {
+		return orders[component];
+	}
+
+	/**
+	 * Number of consecutive approximations that have to meet the tolerance
+	 * criterion for a given accuracy (0: Good, 1: Better, 2: Best).
+	 */
+	public int getRepetitions(int accuracy) {
+		if (accuracy == 0)
+			return 5;
+		else if (accuracy == 1)
+			return 7;
+		else if (accuracy == 2)
+			return 9;
+		return 3;
+	}
+
+	// Lower limit of the integral
+	abstract public double getLowerLimit();
+
+	// Upper limit of the integral
+	abstract public double getUpperLimit();
+
+	/**
+	 * Argument of the Bessel functions per unit of radial distance, the
+	 * argument is r * getBesselScale(rho).
+	 */
+	abstract public double getBesselScale(double rho);
+
+	/**
+	 * Phase aberration W(rho) of the pupil function.
+	 */
+	abstract public double getPhase(double rho);
+
+	/**
+	 * Real amplitude A_c(rho) of every component of the pupil function, the
+	 * Bessel kernel excluded, written in A[c].
+	 */
+	abstract public void getAmplitude(double rho, double[] A);
+
+	/**
+	 * Phase aberration at rho, which is the node 'node' of the dyadic grid,
+	 * or -1 if rho is not on the grid. Models having run tables override
+	 * this method to read the terms that do not depend on the plane.
+	 */
+	public double getPhase(double rho, int node) {
+		return getPhase(rho);
+	}
+
+	/**
+	 * Amplitudes at rho, which is the node 'node' of the dyadic grid, or -1
+	 * if rho is not on the grid.
+	 */
+	public void getAmplitude(double rho, int node, double[] A) {
+		getAmplitude(rho, A);
+	}
+
+	/**
+	 * Index on the dyadic grid of the node n of a regular grid of 2^level
+	 * intervals, -1 if the node is not on the dyadic grid.
+	 */
+	public static int getNode(int level, int n) {
+		if (level <= TABLE_LEVELS)
+			return n << (TABLE_LEVELS - level);
+		int shift = level - TABLE_LEVELS;
+		if (shift > 30 || (n & ((1 << shift) - 1)) != 0)
+			return -1;
+		return n >> shift;
+	}
+
+	/**
+	 * Number of oscillations of the integrand over the integration range for
+	 * radii up to rMax: the oscillations of the Bessel kernel plus the total
+	 * variation of the phase, in units of 2*pi.
+	 */
+	public double getNumberOfPeriods(double rMax) {
+		int M = 512;
+		double a = getLowerLimit();
+		double b = getUpperLimit();
+		double sMax = 0.0;
+		double variation = 0.0;
+		double prev = getPhase(a);
+		for (int i = 0; i <= M; i++) {
+			double rho = a + i * (b - a) / M;
+			sMax = Math.max(sMax, Math.abs(getBesselScale(rho)));
+			double W = getPhase(rho);
+			variation += Math.abs(W - prev);
+			prev = W;
+		}
+		return (rMax * sMax + variation) / (2.0 * Math.PI);
+	}
+
+	/**
+	 * 'rho' is the integration parameter. 'r' is the radial distance of the
+	 * detector relative to the optical axis. The real part of the component c
+	 * is written in value[2*c], the imaginary part in value[2*c+1].
+	 */
+	public void integrand(double rho, double r, double[] value) {
+		integrand(rho, -1, r, value);
+	}
+
+	/**
+	 * Integrand at rho, which is the node 'node' of the dyadic grid, or -1 if
+	 * rho is not on the grid.
+	 */
+	public void integrand(double rho, int node, double r, double[] value) {
+		double x = r * getBesselScale(rho);
+		double W = getPhase(rho, node);
+		double cosW = Math.cos(W);
+		double sinW = Math.sin(W);
+		double[] A = amplitude;
+		getAmplitude(rho, node, A);
+		if (components == 1) {
+			double B = A[0] * (orders[0] == 0 ? bessel.tabulatedJ0(x) : FastBessel.J(orders[0], x));
+			value[0] = B * cosW;
+			value[1] = B * sinW;
+		}
+		else {
+			double J0 = bessel.tabulatedJ0(x);
+			double J1 = bessel.tabulatedJ1(x);
+			double J2 = FastBessel.J2(x, J0, J1);
+			for (int c = 0; c < components; c++) {
+				double B = A[c] * (orders[c] == 0 ? J0 : (orders[c] == 1 ? J1 : J2));
+				value[2 * c] = B * cosW;
+				value[2 * c + 1] = B * sinW;
+			}
+		}
+	}
+}
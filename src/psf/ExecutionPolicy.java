@@ -0,0 +1,159 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+import bilib.commons.settings.Settings;
+
+/**
+ * Thread budget of the computation of a PSF: the number of threads, 0 for
+ * one per available processor, the number of processors to leave free for
+ * the other jobs of the node, and whether the workers are dedicated to the
+ * run or shared by all the runs of the process with the same budget.
+ * 
+ * The policy is read from the settings (keys Threads, ReservedCores and
+ * ThreadPool, "dedicated" or "shared") or set by the API, see
+ * PSF.setExecutionPolicy().
+ */
+public class ExecutionPolicy {
+
+	private int		threads		= 0;
+	private int		reserved	= 0;
+	private boolean	shared		= false;
+
+	public ExecutionPolicy() {
+	}
+
+	public ExecutionPolicy(int threads, int reserved, boolean shared) {
+		this.threads = threads;
+		this.reserved = reserved;
+		this.shared = shared;
+	}
+
+	/**
+	 * Policy of the settings, the default values for the missing keys.
+	 */
+	public static ExecutionPolicy load(Settings settings) {
+		ExecutionPolicy policy = new ExecutionPolicy();
+		policy.threads = parse(settings.loadValue("Threads", "0"), 0);
+		policy.reserved = parse(settings.loadValue("ReservedCores", "0"), 0);
+		policy.shared = settings.loadValue("ThreadPool", "dedicated").trim().equalsIgnoreCase("shared");
+		return policy;
+	}
+
+	public void store(Settings settings) {
+		settings.storeValue("Threads", "" + threads);
+		settings.storeValue("ReservedCores", "" + reserved);
+		settings.storeValue("ThreadPool", shared ? "shared" : "dedicated");
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getReserved() {
+		return reserved;
+	}
+
+	public void setReserved(int reserved) {
+		this.reserved = reserved;
+	}
+
+	public boolean isShared() {
+		return shared;
+	}
+
+	public void setShared(boolean shared) {
+		this.shared = shared;
+	}
+
+	/**
+	 * Number of workers: the requested threads, at most the available
+	 * processors minus the reserved ones, at least one.
+	 */
+	public int getParallelism() {
+		int available = Runtime.getRuntime().availableProcessors() - Math.max(0, reserved);
+		int n = (threads > 0 ? Math.min(threads, available) : available);
+		return Math.max(1, n);
+	}
+
+	/**
+	 * Scheduler of a run: the shared one of this budget, or a new one that
+	 * the caller has to release with release().
+	 */
+	public ForkJoinScheduler createScheduler() {
+		if (shared)
+			return ForkJoinScheduler.getShared(getParallelism());
+		return new ForkJoinScheduler(getParallelism());
+	}
+
+	/**
+	 * Releases a scheduler of createScheduler(), unless it is shared. The
+	 * scheduler knows whether it is shared, so that a change of the policy
+	 * during a run neither shuts down the shared workers nor leaks the
+	 * dedicated ones.
+	 */
+	public void release(ForkJoinScheduler scheduler) {
+		if (scheduler != null && !scheduler.isShared())
+			scheduler.shutdown();
+	}
+
+	@Override
+	public String toString() {
+		return getParallelism() + " threads, " + (shared ? "shared" : "dedicated") + " pool, " + reserved + " reserved cores";
+	}
+
+	private static int parse(String value, int defaultValue) {
+		try {
+			return Integer.parseInt(value.trim());
+		}
+		catch (Exception e) {
+			return defaultValue;
+		}
+	}
+}
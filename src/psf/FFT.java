@@ -0,0 +1,116 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+/**
+ * In-place radix-2 fast Fourier transform of complex sequences whose length
+ * is a power of two. The inverse transform is normalized by 1/N.
+ */
+public class FFT {
+
+	/**
+	 * Smallest power of two larger than or equal to n.
+	 */
+	public static int getLength(int n) {
+		int N = 1;
+		while (N < n)
+			N *= 2;
+		return N;
+	}
+
+	/**
+	 * Transforms the sequence (re, im) in place; the length should be a power
+	 * of two.
+	 */
+	public static void transform(double[] re, double[] im, boolean inverse) {
+		int N = re.length;
+		// Bit-reversal permutation
+		for (int i = 1, j = 0; i < N; i++) {
+			int bit = N >> 1;
+			for (; (j & bit) != 0; bit >>= 1)
+				j ^= bit;
+			j ^= bit;
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+		// Butterflies
+		double sign = (inverse ? 1.0 : -1.0);
+		for (int len = 2; len <= N; len *= 2) {
+			double angle = sign * 2.0 * Math.PI / len;
+			double wr = Math.cos(angle);
+			double wi = Math.sin(angle);
+			int half = len / 2;
+			for (int start = 0; start < N; start += len) {
+				double ur = 1.0;
+				double ui = 0.0;
+				for (int k = 0; k < half; k++) {
+					int p = start + k;
+					int q = p + half;
+					double tr = re[q] * ur - im[q] * ui;
+					double ti = re[q] * ui + im[q] * ur;
+					re[q] = re[p] - tr;
+					im[q] = im[p] - ti;
+					re[p] += tr;
+					im[p] += ti;
+					double next = ur * wr - ui * wi;
+					ui = ur * wi + ui * wr;
+					ur = next;
+				}
+			}
+		}
+		if (inverse) {
+			for (int i = 0; i < N; i++) {
+				re[i] /= N;
+				im[i] /= N;
+			}
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+package psf;
+
+/**
+ * Bessel functions of the first kind of order 0, 1 and 2 for the
+ * diffraction integrals.
+ * 
+ * J0 and J1 are the polynomial approximations of M. Abramowitz and I. A.
+ * Stegun, Handbook of Mathematical Functions, National Bureau of Standards,
+ * 1964, formulas 9.4.1 and 9.4.4 for |x| <= 3, and the modulus and phase
+ * forms 9.4.3 and 9.4.6 for |x| > 3. The absolute error is below 1E-7
+ * everywhere, as checked by RadialValidation.
+ * 
+ * The tabulated versions interpolate a precomputed table by cubic Hermite
+ * polynomials, the derivatives being known in closed form. The
+ * interpolation error is below h^4 / 384 for a step h, 2.5E-9 for the
+ * default step, and the table avoids the trigonometric functions of the
+ * asymptotic forms. Outside the table the direct approximations are used.
+ */
+public class FastBessel {
+
+	// Default table: arguments up to TABLE_MAX, TABLE_SAMPLES samples per unit
+	public static final double	TABLE_MAX		= 512.0;
+	public static final int		TABLE_SAMPLES	= 32;
+
+	// Arguments below which J2 is given by its series
+	private static final double	SERIES			= 0.1;
+
+	private static FastBessel	table;
+
+	private double				xMax;
+	private double				scale;
+	private double[]			j0;
+	private double[]			j1;
+	private double[]			dj1;
+
+	/**
+	 * Builds a table of J0 and J1 on [0, xMax] with 'samples' samples per
+	 * unit of argument.
+	 */
+	public FastBessel(double xMax, int samples) {
+		int n = (int) Math.ceil(xMax * samples);
+		this.xMax = (double) n / samples;
+		this.scale = samples;
+		j0 = new double[n + 2];
+		j1 = new double[n + 2];
+		dj1 = new double[n + 2];
+		for (int i = 0; i < n + 2; i++) {
+			double x = i / scale;
+			j0[i] = J0(x);
+			j1[i] = J1(x);
+			dj1[i] = (i == 0 ? 0.5 : j0[i] - j1[i] / x);
+		}
+	}
+
+	/**
+	 * Returns the shared default table, built on the first call.
+	 */
+	public static synchronized FastBessel getTable() {
+		if (table == null)
+			table = new FastBessel(TABLE_MAX, TABLE_SAMPLES);
+		return table;
+	}
+
+	public static double J0(double x) {
+		double ax = Math.abs(x);
+		if (ax <= 3.0) {
+			// A&S 9.4.1
+			double y = (x / 3.0) * (x / 3.0);
+			return 1.0 + y * (-2.2499997 + y * (1.2656208 + y * (-0.3163866 + y * (0.0444479 + y * (-0.0039444 + y * 0.0002100)))));
+		}
+		// A&S 9.4.3
+		double z = 3.0 / ax;
+		double f0 = 0.79788456 + z * (-0.00000077 + z * (-0.00552740 + z * (-0.00009512 + z * (0.00137237 + z * (-0.00072805 + z * 0.00014476)))));
+		double theta0 = ax - 0.78539816 + z * (-0.04166397 + z * (-0.00003954 + z * (0.00262573 + z * (-0.00054125 + z * (-0.00029333 + z * 0.00013558)))));
+		return f0 * Math.cos(theta0) / Math.sqrt(ax);
+	}
+
+	public static double J1(double x) {
+		double ax = Math.abs(x);
+		if (ax <= 3.0) {
+			// A&S 9.4.4
+			double y = (x / 3.0) * (x / 3.0);
+			return x * (0.5 + y * (-0.56249985 + y * (0.21093573 + y * (-0.03954289 + y * (0.00443319 + y * (-0.00031761 + y * 0.00001109))))));
+		}
+		// A&S 9.4.6
+		double z = 3.0 / ax;
+		double f1 = 0.79788456 + z * (0.00000156 + z * (0.01659667 + z * (0.00017105 + z * (-0.00249511 + z * (0.00113653 + z * (-0.00020033))))));
+		double theta1 = ax - 2.35619449 + z * (0.12499612 + z * (0.00005650 + z * (-0.00637879 + z * (0.00074348 + z * (0.00079824 + z * (-0.00029166))))));
+		double ans = f1 * Math.cos(theta1) / Math.sqrt(ax);
+		return (x < 0.0 ? -ans : ans);
+	}
+
+	/**
+	 * Asymptotic form of J0 for x >= 3, J0(x) = Re[(p + i * q) * exp(i * (x -
+	 * pi / 4))], with p = f0 * cos(d) / sqrt(x) and q = f0 * sin(d) /
+	 * sqrt(x) slowly varying, f0 and d = theta0 - x + pi / 4 being the
+	 * modulus and the phase correction of A&S 9.4.3. The factors are written
+	 * in pq[0] and pq[1].
+	 */
+	public static void asymptoticJ0(double x, double[] pq) {
+		double z = 3.0 / x;
+		double f0 = 0.79788456 + z * (-0.00000077 + z * (-0.00552740 + z * (-0.00009512 + z * (0.00137237 + z * (-0.00072805 + z * 0.00014476)))));
+		double d = z * (-0.04166397 + z * (-0.00003954 + z * (0.00262573 + z * (-0.00054125 + z * (-0.00029333 + z * 0.00013558)))));
+		double c = f0 / Math.sqrt(x);
+		pq[0] = c * Math.cos(d);
+		pq[1] = c * Math.sin(d);
+	}
+
+	/**
+	 * J2 from the recurrence J2(x) = 2 * J1(x) / x - J0(x). Below SERIES the
+	 * two terms cancel, J2 is then given by its series x^2/8 - x^4/96 +
+	 * x^6/3072.
+	 */
+	public static double J2(double x, double J0, double J1) {
+		if (Math.abs(x) < SERIES) {
+			double x2 = x * x;
+			return x2 * (1.0 / 8.0 - x2 * (1.0 / 96.0 - x2 / 3072.0));
+		}
+		return 2.0 * J1 / x - J0;
+	}
+
+	public static double J2(double x) {
+		return J2(x, J0(x), J1(x));
+	}
+
+	/**
+	 * Bessel function of order 0, 1 or 2.
+	 */
+	public static double J(int order, double x) {
+		if (order == 0)
+			return J0(x);
+		if (order == 1)
+			return J1(x);
+		return J2(x);
+	}
+
+	// Batch versions, out[i] = J(x[i]) for i in [0, n)
+
+	public static void J0(double[] x, double[] out, int n) {
+		for (int i = 0; i < n; i++)
+			out[i] = J0(x[i]);
+	}
+
+	public static void J1(double[] x, double[] out, int n) {
+		for (int i = 0; i < n; i++)
+			out[i] = J1(x[i]);
+	}
+
+	public static void J2(double[] x, double[] j0, double[] j1, double[] out, int n) {
+		for (int i = 0; i < n; i++)
+			out[i] = J2(x[i], j0[i], j1[i]);
+	}
+
+	// Tabulated versions
+
+	public double tabulatedJ0(double x) {
+		if (x >= xMax || x < 0.0)
+			return J0(x);
+		double t = x * scale;
+		int i = (int) t;
+		t -= i;
+		// J0' = -J1
+		return hermite(t, j0[i], j0[i + 1], -j1[i] / scale, -j1[i + 1] / scale);
+	}
+
+	public double tabulatedJ1(double x) {
+		if (x >= xMax || x < 0.0)
+			return J1(x);
+		double t = x * scale;
+		int i = (int) t;
+		t -= i;
+		// J1' = J0 - J1 / x
+		return hermite(t, j1[i], j1[i + 1], dj1[i] / scale, dj1[i + 1] / scale);
+	}
+
+	public void tabulatedJ0(double[] x, double[] out, int n) {
+		for (int i = 0; i < n; i++)
+			out[i] = tabulatedJ0(x[i]);
+	}
+
+	public void tabulatedJ1(double[] x, double[] out, int n) {
+		for (int i = 0; i < n; i++)
+			out[i] = tabulatedJ1(x[i]);
+	}
+
+	// Cubic Hermite interpolation on [0, 1]
+	private static double hermite(double t, double f0, double f1, double d0, double d1) {
+		double t2 = t * t;
+		double t3 = t2 * t;
+		return (2 * t3 - 3 * t2 + 1) * f0 + (t3 - 2 * t2 + t) * d0 + (-2 * t3 + 3 * t2) * f1 + (t3 - t2) * d1;
+	}
+}
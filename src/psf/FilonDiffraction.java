@@ -0,0 +1,376 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+/**
+ * Filon-type quadrature of the Kirchhoff diffraction integral for the
+ * strongly oscillating cases: planes far from focus, where the phase W(rho)
+ * varies by many periods, and large radii, where the Bessel kernel does.
+ * 
+ * The integration range is divided in panels. In every panel, the
+ * phase is approximated by its chord and only the slowly varying remainder
+ * is interpolated by a quadratic; the product with the linear phase factor
+ * is integrated exactly. The width of the panels follows the curvature of
+ * the phase, not its slope, so that the cost does not grow with the defocus
+ * or the radius.
+ * 
+ * Where the argument of J0 is large, J0 is split in two waves with the
+ * asymptotic form J0(x) = Re[(p + i * q) * exp(i * (x - pi / 4))] and its
+ * phase is added to W. Near the axis, J0 is part of the amplitude and the
+ * panels are subdivided to follow it.
+ * 
+ * Only scalar integrands of order 0 are supported. The pupil function is
+ * sampled once, at the first call, and the results are on the scale of the
+ * Simpson approximation.
+ */
+public class FilonDiffraction {
+
+	// Smallest argument of J0 for the asymptotic form
+	private static final double		X_ASYMPTOTIC	= 8.0;
+
+	// Largest step of the argument of J0 in a panel near the axis
+	private static final double		X_STEP			= 0.5;
+
+	private static final int		MIN_PANELS		= 16;
+	private static final int		MAX_PANELS		= 4096;
+
+	// Below this phase increment, the moments are computed from their series
+	// to avoid the cancellation of the closed form
+	private static final double		SMALL_THETA		= 0.05;
+	private static final int		SERIES_TERMS	= 6;
+
+	private DiffractionIntegrand	integrand;
+	private int						accuracy;
+
+	// Pupil function at the ends and middles of the panels, node 2 * p is
+	// the start of the panel p
+	private int						panels			= 0;
+	private double[]				rho;
+	private double[]				scale;
+	private double[]				phase;
+	private double[]				amplitude;
+
+	// Variation of the phase and largest Bessel scale over the range
+	private double					variation;
+	private double					sMax;
+
+	// Workspaces of the asymptotic form and of the complex results
+	private double[]				pq				= new double[2];
+	private double[]				A				= new double[1];
+	private double[]				moments			= new double[6];
+	private double[]				sum				= new double[2];
+	private double[]				gr				= new double[3];
+	private double[]				gi				= new double[3];
+	private double[]				chi				= new double[3];
+
+	private long					evaluations		= 0;
+
+	public FilonDiffraction(DiffractionIntegrand integrand, int accuracy) {
+		this.integrand = integrand;
+		this.accuracy = accuracy;
+	}
+
+	/**
+	 * True if the integrand is supported: a single component of order 0.
+	 */
+	public static boolean isSupported(DiffractionIntegrand integrand) {
+		return integrand.getComponents() == 1 && integrand.getOrder(0) == 0;
+	}
+
+	/**
+	 * Number of oscillations of the integrand at the radius r, the variation
+	 * of the phase plus the variation of the argument of J0, in units of
+	 * 2*pi.
+	 */
+	public double getNumberOfPeriods(double r) {
+		if (panels == 0)
+			sample();
+		return (variation + r * sMax) / (2.0 * Math.PI);
+	}
+
+	public long getNumberOfEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * Intensity at the radial distance r, on the scale of the Simpson
+	 * approximation.
+	 */
+	public double calculate(double r) {
+		if (panels == 0)
+			sample();
+		double re = 0.0;
+		double im = 0.0;
+		for (int p = 0; p < panels; p++) {
+			int j = 2 * p;
+			if (r * scale[j] >= X_ASYMPTOTIC && r * scale[j + 2] >= X_ASYMPTOTIC)
+				asymptoticPanel(j, r);
+			else
+				nearPanel(j, r);
+			re += sum[0];
+			im += sum[1];
+		}
+		// Factor 3 to keep the scale of the Simpson sums
+		return 9.0 * (re * re + im * im);
+	}
+
+	// Both waves of the asymptotic form of J0 in the panel starting at the
+	// node j. The result is written in sum.
+	private void asymptoticPanel(int j, double r) {
+		double re = 0.0;
+		double im = 0.0;
+		for (int i = 0; i < 3; i++) {
+			double x = r * scale[j + i];
+			FastBessel.asymptoticJ0(x, pq);
+			gr[i] = 0.5 * amplitude[j + i] * pq[0];
+			gi[i] = 0.5 * amplitude[j + i] * pq[1];
+			chi[i] = x - 0.25 * Math.PI;
+		}
+		evaluations += 3;
+		for (int sign = -1; sign <= 1; sign += 2) {
+			panel(rho[j + 2] - rho[j],
+				gr[0], sign * gi[0], phase[j] + sign * chi[0],
+				gr[1], sign * gi[1], phase[j + 1] + sign * chi[1],
+				gr[2], sign * gi[2], phase[j + 2] + sign * chi[2]);
+			re += sum[0];
+			im += sum[1];
+		}
+		sum[0] = re;
+		sum[1] = im;
+	}
+
+	// Panel starting at the node j, where J0 is part of the amplitude. The
+	// panel is subdivided so that the argument of J0 changes by at most
+	// X_STEP per sub-panel. The result is written in sum.
+	private void nearPanel(int j, double r) {
+		int m = (int) Math.ceil(r * Math.abs(scale[j + 2] - scale[j]) / X_STEP);
+		if (m <= 1) {
+			double g0 = amplitude[j] * FastBessel.J0(r * scale[j]);
+			double g1 = amplitude[j + 1] * FastBessel.J0(r * scale[j + 1]);
+			double g2 = amplitude[j + 2] * FastBessel.J0(r * scale[j + 2]);
+			evaluations += 3;
+			panel(rho[j + 2] - rho[j], g0, 0.0, phase[j], g1, 0.0, phase[j + 1], g2, 0.0, phase[j + 2]);
+			return;
+		}
+		double re = 0.0;
+		double im = 0.0;
+		double d = (rho[j + 2] - rho[j]) / m;
+		double t0 = rho[j];
+		double g0 = amplitude[j] * FastBessel.J0(r * scale[j]);
+		double w0 = phase[j];
+		for (int k = 0; k < m; k++) {
+			double t1 = t0 + 0.5 * d;
+			double t2 = (k == m - 1 ? rho[j + 2] : t0 + d);
+			double g1 = value(t1, r);
+			double w1 = integrand.getPhase(t1);
+			double g2, w2;
+			if (k == m - 1) {
+				g2 = amplitude[j + 2] * FastBessel.J0(r * scale[j + 2]);
+				w2 = phase[j + 2];
+			}
+			else {
+				g2 = value(t2, r);
+				w2 = integrand.getPhase(t2);
+			}
+			panel(d, g0, 0.0, w0, g1, 0.0, w1, g2, 0.0, w2);
+			re += sum[0];
+			im += sum[1];
+			t0 = t2;
+			g0 = g2;
+			w0 = w2;
+		}
+		evaluations += 2 * m + 1;
+		sum[0] = re;
+		sum[1] = im;
+	}
+
+	// Amplitude of the integrand, J0 included, off the panel nodes
+	private double value(double t, double r) {
+		integrand.getAmplitude(t, A);
+		return A[0] * FastBessel.J0(r * integrand.getBesselScale(t));
+	}
+
+	// panel()
+	// Integral over [0, d] of g(t) * exp(i * phi(t)), where the complex
+	// amplitude g and the phase phi are given at t = 0, d/2 and d. The phase
+	// is split in its chord, integrated exactly, and a remainder, which is
+	// interpolated with the amplitude by a quadratic. The result is written
+	// in sum.
+	private void panel(double d,
+			double g0r, double g0i, double phi0,
+			double g1r, double g1i, double phi1,
+			double g2r, double g2i, double phi2) {
+		double theta = phi2 - phi0;
+		double delta = phi1 - 0.5 * (phi0 + phi2);
+		double cd = Math.cos(delta);
+		double sd = Math.sin(delta);
+		double qmr = g1r * cd - g1i * sd;
+		double qmi = g1r * sd + g1i * cd;
+		// q(t) = q0 + beta * t + gamma * t^2
+		double br = (4.0 * qmr - 3.0 * g0r - g2r) / d;
+		double bi = (4.0 * qmi - 3.0 * g0i - g2i) / d;
+		double cr = 2.0 * (g0r - 2.0 * qmr + g2r) / (d * d);
+		double ci = 2.0 * (g0i - 2.0 * qmi + g2i) / (d * d);
+		moments(d, theta);
+		double[] M = moments;
+		double re = g0r * M[0] - g0i * M[1] + br * M[2] - bi * M[3] + cr * M[4] - ci * M[5];
+		double im = g0r * M[1] + g0i * M[0] + br * M[3] + bi * M[2] + cr * M[5] + ci * M[4];
+		double c0 = Math.cos(phi0);
+		double s0 = Math.sin(phi0);
+		sum[0] = re * c0 - im * s0;
+		sum[1] = re * s0 + im * c0;
+	}
+
+	// moments()
+	// M_m = int_0^d t^m exp(i * theta * t / d) dt for m = 0, 1, 2, the real
+	// and imaginary parts are written in moments[2*m] and moments[2*m+1].
+	private void moments(double d, double theta) {
+		if (Math.abs(theta) < SMALL_THETA) {
+			// Series of exp(i * theta * u) over u in [0, 1], the term k is
+			// (i * theta)^k / k!
+			for (int m = 0; m < 6; m++)
+				moments[m] = 0.0;
+			double pr = 1.0;
+			double pi = 0.0;
+			for (int k = 0; k < SERIES_TERMS; k++) {
+				for (int m = 0; m <= 2; m++) {
+					moments[2 * m] += pr / (m + k + 1);
+					moments[2 * m + 1] += pi / (m + k + 1);
+				}
+				double t = theta / (k + 1);
+				double next = -pi * t;
+				pi = pr * t;
+				pr = next;
+			}
+			double scale = d;
+			for (int m = 0; m <= 2; m++) {
+				moments[2 * m] *= scale;
+				moments[2 * m + 1] *= scale;
+				scale *= d;
+			}
+			return;
+		}
+		double omega = theta / d;
+		double ce = Math.cos(theta);
+		double se = Math.sin(theta);
+		// Division by i * omega: (a + i * b) / (i * omega) = (b - i * a) / omega
+		double ar = ce - 1.0;
+		double ai = se;
+		moments[0] = ai / omega;
+		moments[1] = -ar / omega;
+		ar = d * ce - moments[0];
+		ai = d * se - moments[1];
+		moments[2] = ai / omega;
+		moments[3] = -ar / omega;
+		ar = d * d * ce - 2.0 * moments[2];
+		ai = d * d * se - 2.0 * moments[3];
+		moments[4] = ai / omega;
+		moments[5] = -ar / omega;
+	}
+
+	// sample()
+	// Panels and pupil function, once per plane. The residual phase of a
+	// panel of width d is about d^2 * |W''| / 8; its bound is set by the
+	// accuracy and the panels are narrower where the phase is curved.
+	private void sample() {
+		double a = integrand.getLowerLimit();
+		double b = integrand.getUpperLimit();
+		int M = 512;
+		double step = (b - a) / M;
+		double[] curvature = new double[M + 1];
+		double[] w = new double[M + 1];
+		variation = 0.0;
+		sMax = 0.0;
+		for (int i = 0; i <= M; i++) {
+			double t = a + i * step;
+			w[i] = integrand.getPhase(t);
+			sMax = Math.max(sMax, Math.abs(integrand.getBesselScale(t)));
+			if (i > 0)
+				variation += Math.abs(w[i] - w[i - 1]);
+		}
+		for (int i = 1; i < M; i++)
+			curvature[i] = Math.abs(w[i + 1] - 2.0 * w[i] + w[i - 1]) / (step * step);
+		curvature[0] = curvature[1];
+		curvature[M] = curvature[M - 1];
+
+		double residual = (accuracy >= 2 ? 0.05 : (accuracy == 1 ? 0.1 : 0.2));
+		double hMax = (b - a) / MIN_PANELS;
+		double hMin = (b - a) / MAX_PANELS;
+		double[] ends = new double[MAX_PANELS + 2];
+		ends[0] = a;
+		panels = 0;
+		double t = a;
+		while (t < b) {
+			// Largest curvature over the samples covered by the panel
+			double d = hMax;
+			for (int pass = 0; pass < 2; pass++) {
+				int i0 = (int) Math.floor((t - a) / step);
+				int i1 = Math.min(M, (int) Math.ceil((t + d - a) / step));
+				double c = 0.0;
+				for (int i = i0; i <= i1; i++)
+					c = Math.max(c, curvature[i]);
+				if (c > 0.0)
+					d = Math.min(d, Math.sqrt(8.0 * residual / c));
+			}
+			d = Math.max(hMin, d);
+			t = (b - t - d < 0.5 * hMin ? b : t + d);
+			ends[++panels] = t;
+		}
+		int nodes = 2 * panels + 1;
+		rho = new double[nodes];
+		scale = new double[nodes];
+		phase = new double[nodes];
+		amplitude = new double[nodes];
+		for (int j = 0; j < nodes; j++) {
+			int p = j / 2;
+			rho[j] = (j % 2 == 0 ? ends[p] : 0.5 * (ends[p] + ends[p + 1]));
+			scale[j] = integrand.getBesselScale(rho[j]);
+			phase[j] = integrand.getPhase(rho[j]);
+			integrand.getAmplitude(rho[j], A);
+			amplitude[j] = A[0];
+		}
+		evaluations += nodes;
+	}
+}
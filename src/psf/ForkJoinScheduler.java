@@ -0,0 +1,157 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import bilib.commons.job.runnable.Job;
+
+/**
+ * Fork/join execution of the jobs of a PSF. The jobs are submitted longest
+ * first, from an estimate of their cost, so that the long planes do not
+ * start last and leave the other workers idle. A job may fork subtasks, the
+ * radius chunks of its profile, which the idle workers steal.
+ */
+public class ForkJoinScheduler {
+
+	private ForkJoinPool				pool;
+
+	// Scheduler of getShared(), never shut down
+	private boolean						owned	= true;
+
+	// Schedulers shared by the runs and the volumes, by parallelism
+	private static HashMap<Integer, ForkJoinScheduler>	shared	= new HashMap<Integer, ForkJoinScheduler>();
+
+	public ForkJoinScheduler(int threads) {
+		pool = new ForkJoinPool(Math.max(1, threads));
+	}
+
+	/**
+	 * Scheduler of the given parallelism shared by all the runs and the
+	 * volumes, created on first use and never shut down.
+	 */
+	public static synchronized ForkJoinScheduler getShared(int threads) {
+		threads = Math.max(1, threads);
+		ForkJoinScheduler scheduler = shared.get(threads);
+		if (scheduler == null) {
+			scheduler = new ForkJoinScheduler(threads);
+			scheduler.owned = false;
+			shared.put(threads, scheduler);
+		}
+		return scheduler;
+	}
+
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Runs the task and its subtasks on the workers, and waits for it.
+	 */
+	public void invoke(ForkJoinTask<?> task) {
+		if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool)
+			task.invoke();
+		else
+			pool.invoke(task);
+	}
+
+	/**
+	 * Runs the jobs, in decreasing order of cost, and waits for all of them.
+	 */
+	public void execute(Job[] jobs, double[] costs) {
+		Integer[] order = new Integer[jobs.length];
+		for (int i = 0; i < jobs.length; i++)
+			order[i] = i;
+		final double[] c = costs;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(c[b], c[a]);
+			}
+		});
+		ArrayList<ForkJoinTask<Void>> tasks = new ArrayList<ForkJoinTask<Void>>();
+		for (int i = 0; i < jobs.length; i++)
+			tasks.add(pool.submit(new JobTask(jobs[order[i]])));
+		for (ForkJoinTask<Void> task : tasks)
+			task.join();
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * True if the scheduler is one of getShared(), shared by all the runs of
+	 * the process, whatever the policy which requested it.
+	 */
+	public boolean isShared() {
+		return !owned;
+	}
+
+	public boolean isShutdown() {
+		return pool.isShutdown();
+	}
+
+	private static class JobTask extends RecursiveAction {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private Job	job;
+
+		public JobTask(Job job) {
+			this.job = job;
+		}
+
+		@Override
+		protected void compute() {
+			job.run();
+		}
+	}
+}
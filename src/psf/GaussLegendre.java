@@ -0,0 +1,110 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+package psf;
+
+import java.util.HashMap;
+
+/**
+ * Nodes and weights of the Gauss-Legendre quadrature on [-1, 1]. The tables
+ * are computed once by Newton iterations on the Legendre polynomials and
+ * cached for the whole session.
+ */
+public class GaussLegendre {
+
+	private static HashMap<Integer, double[][]>	tables	= new HashMap<Integer, double[][]>();
+
+	/**
+	 * Number of nodes per panel for a given accuracy (0: Good, 1: Better, 2:
+	 * Best).
+	 */
+	public static int getOrder(int accuracy) {
+		if (accuracy == 1)
+			return 12;
+		else if (accuracy == 2)
+			return 16;
+		return 8;
+	}
+
+	/**
+	 * Returns the table of the quadrature of order n: the nodes in [0], the
+	 * weights in [1]. The table is shared, it should not be modified.
+	 */
+	public static synchronized double[][] getTable(int n) {
+		double[][] table = tables.get(n);
+		if (table == null) {
+			table = compute(n);
+			tables.put(n, table);
+		}
+		return table;
+	}
+
+	private static double[][] compute(int n) {
+		double[] x = new double[n];
+		double[] w = new double[n];
+		for (int i = 0; i < (n + 1) / 2; i++) {
+			// Initial guess of the i-th root, then Newton iterations
+			double t = Math.cos(Math.PI * (i + 0.75) / (n + 0.5));
+			double dp = 0.0;
+			for (int iter = 0; iter < 100; iter++) {
+				double p0 = 1.0;
+				double p1 = t;
+				for (int k = 2; k <= n; k++) {
+					double p2 = ((2 * k - 1) * t * p1 - (k - 1) * p0) / k;
+					p0 = p1;
+					p1 = p2;
+				}
+				dp = n * (t * p1 - p0) / (t * t - 1.0);
+				double dt = p1 / dp;
+				t -= dt;
+				if (Math.abs(dt) < 1E-15)
+					break;
+			}
+			x[i] = -t;
+			x[n - 1 - i] = t;
+			w[i] = 2.0 / ((1.0 - t * t) * dp * dp);
+			w[n - 1 - i] = w[i];
+		}
+		return new double[][] { x, w };
+	}
+}
@@ -0,0 +1,299 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+/**
+ * Quasi-fast Hankel transform of the pupil function: the radial profile of a
+ * plane is computed at all the radii at once.
+ * 
+ * The Kirchhoff diffraction integral is an integral of the pupil function
+ * against J_c(r * s). With logarithmic grids s_i = s0 * exp((i + 1/2) * d)
+ * and r_j = r0 * exp(j * d), the kernel J_c(r_j * s_i) depends only on i + j
+ * and the integral becomes a correlation, computed by FFT in O(M log M) for
+ * all the radii. The spectra of the kernels do not depend on the plane,
+ * they are computed once per run.
+ * 
+ * The pupil is integrated with the midpoint rule on the logarithmic cells,
+ * and the short head [0, s0] of the range with a direct 2-point
+ * Gauss-Legendre rule. The profile is interpolated from the logarithmic
+ * radii with a cubic. The results are on the scale of the Simpson
+ * approximation.
+ */
+public class HankelTransform {
+
+	// Variation of the argument of the integrand per logarithmic cell,
+	// for every accuracy
+	private static final double[]	STEP	= new double[] { 0.5, 0.25, 0.12 };
+
+	private int						components;
+	private int[]					orders;
+	private double[]				weights;
+
+	// Logarithmic step, number of cells of the pupil and number of radii
+	private double					delta;
+	private int						Ms;
+	private int						Mr;
+	private int						N;
+	private double					s0;
+	private double					r0;
+
+	// Pupil nodes: middles of the cells and their lengths in rho
+	private double[]				rho;
+	private double[]				drho;
+	private double[]				scale;
+
+	// Head of the range [a, rho(s0)]
+	private double[]				headRho		= new double[2];
+	private double[]				headWeight	= new double[2];
+	private double[]				headScale	= new double[2];
+
+	// Spectra of the kernels of every component
+	private double[][]				kernelRe;
+	private double[][]				kernelIm;
+
+	/**
+	 * Grids and kernels for the planes of 'integrands' and the radii r, in
+	 * meters, sorted in increasing order.
+	 */
+	public HankelTransform(DiffractionIntegrand[] integrands, double[] r, int accuracy) {
+		DiffractionIntegrand integrand = integrands[0];
+		components = integrand.getComponents();
+		orders = new int[components];
+		weights = new double[components];
+		for (int c = 0; c < components; c++) {
+			orders[c] = integrand.getOrder(c);
+			weights[c] = integrand.getWeight(c);
+		}
+		double a = integrand.getLowerLimit();
+		double b = integrand.getUpperLimit();
+		double sa = integrand.getBesselScale(a);
+		double sMax = integrand.getBesselScale(b);
+		double rMax = r[r.length - 1];
+		double rMin = rMax;
+		for (int n = 0; n < r.length; n++)
+			if (r[n] > 0.0)
+				rMin = Math.min(rMin, r[n]);
+
+		// Largest slope of the phase with respect to s over all the planes
+		int M = 512;
+		double slope = 0.0;
+		for (int z = 0; z < integrands.length; z++) {
+			double prevW = integrands[z].getPhase(a);
+			double prevS = sa;
+			for (int i = 1; i <= M; i++) {
+				double t = a + i * (b - a) / M;
+				double W = integrands[z].getPhase(t);
+				double s = integrand.getBesselScale(t);
+				if (s > prevS)
+					slope = Math.max(slope, Math.abs(W - prevW) / (s - prevS));
+				prevW = W;
+				prevS = s;
+			}
+		}
+
+		// The argument of the integrand changes by about s * (r + slope)
+		// over a cell of logarithmic width d
+		double step = STEP[Math.max(0, Math.min(STEP.length - 1, accuracy))];
+		delta = Math.min(0.05, step / (sMax * (rMax + slope)));
+		s0 = Math.max(sa, Math.min(0.01 * sMax, 0.1 / rMax));
+		Ms = Math.max(1, (int) Math.ceil(Math.log(sMax / s0) / delta));
+		delta = Math.log(sMax / s0) / Ms;
+		// The cubic interpolation needs one radius below rMin and two above
+		// rMax
+		r0 = rMin * Math.exp(-delta);
+		Mr = (int) Math.floor(Math.log(rMax / r0) / delta) + 3;
+		N = FFT.getLength(Ms + Mr - 1);
+
+		rho = new double[Ms];
+		drho = new double[Ms];
+		scale = new double[Ms];
+		double edge = getRho(integrand, s0, a, b);
+		for (int i = 0; i < Ms; i++) {
+			double next = (i == Ms - 1 ? b : getRho(integrand, s0 * Math.exp((i + 1) * delta), a, b));
+			scale[i] = s0 * Math.exp((i + 0.5) * delta);
+			rho[i] = getRho(integrand, scale[i], a, b);
+			drho[i] = next - edge;
+			edge = next;
+		}
+		double head = getRho(integrand, s0, a, b) - a;
+		for (int k = 0; k < 2; k++) {
+			headRho[k] = a + 0.5 * head * (1.0 + (k == 0 ? -1.0 : 1.0) / Math.sqrt(3.0));
+			headWeight[k] = 0.5 * head;
+			headScale[k] = integrand.getBesselScale(headRho[k]);
+		}
+
+		kernelRe = new double[components][];
+		kernelIm = new double[components][];
+		for (int c = 0; c < components; c++) {
+			kernelRe[c] = new double[N];
+			kernelIm[c] = new double[N];
+			for (int k = 0; k < Ms + Mr - 1; k++)
+				kernelRe[c][k] = FastBessel.J(orders[c], r0 * s0 * Math.exp((k + 0.5) * delta));
+			FFT.transform(kernelRe[c], kernelIm[c], false);
+		}
+	}
+
+	/**
+	 * Number of samples of the pupil function per plane.
+	 */
+	public int getNumberOfSamples() {
+		return Ms + 2;
+	}
+
+	/**
+	 * Length of the FFT.
+	 */
+	public int getLength() {
+		return N;
+	}
+
+	/**
+	 * Radial profile of the plane of 'integrand' at the radii r, in meters.
+	 */
+	public double[] getProfile(DiffractionIntegrand integrand, double[] r) {
+		// Pupil function at the middle of the cells, times the cell length
+		double[][] pupilRe = new double[components][Ms];
+		double[][] pupilIm = new double[components][Ms];
+		double[] A = new double[components];
+		for (int i = 0; i < Ms; i++) {
+			double W = integrand.getPhase(rho[i]);
+			integrand.getAmplitude(rho[i], A);
+			for (int c = 0; c < components; c++) {
+				pupilRe[c][i] = A[c] * Math.cos(W) * drho[i];
+				pupilIm[c][i] = A[c] * Math.sin(W) * drho[i];
+			}
+		}
+		double[][] headRe = new double[components][2];
+		double[][] headIm = new double[components][2];
+		for (int k = 0; k < 2; k++) {
+			double W = integrand.getPhase(headRho[k]);
+			integrand.getAmplitude(headRho[k], A);
+			for (int c = 0; c < components; c++) {
+				headRe[c][k] = A[c] * Math.cos(W) * headWeight[k];
+				headIm[c][k] = A[c] * Math.sin(W) * headWeight[k];
+			}
+		}
+
+		// Correlation of the pupil with the kernel, g_j = sum_i F_i K_(i+j),
+		// as the convolution of the reversed pupil with the kernel
+		double[][] gRe = new double[components][];
+		double[][] gIm = new double[components][];
+		for (int c = 0; c < components; c++) {
+			double[] re = new double[N];
+			double[] im = new double[N];
+			for (int i = 0; i < Ms; i++) {
+				re[(N - i) % N] = pupilRe[c][i];
+				im[(N - i) % N] = pupilIm[c][i];
+			}
+			FFT.transform(re, im, false);
+			for (int k = 0; k < N; k++) {
+				double pr = re[k] * kernelRe[c][k] - im[k] * kernelIm[c][k];
+				double pi = re[k] * kernelIm[c][k] + im[k] * kernelRe[c][k];
+				re[k] = pr;
+				im[k] = pi;
+			}
+			FFT.transform(re, im, true);
+			gRe[c] = re;
+			gIm[c] = im;
+		}
+
+		double[] h = new double[r.length];
+		for (int n = 0; n < r.length; n++) {
+			double u = (r[n] > 0.0 ? Math.log(r[n] / r0) / delta : -1.0);
+			double I = 0.0;
+			for (int c = 0; c < components; c++) {
+				double vr, vi;
+				if (u < 1.0) {
+					// Direct sum below the logarithmic grid, the axis
+					vr = 0.0;
+					vi = 0.0;
+					for (int i = 0; i < Ms; i++) {
+						double J = FastBessel.J(orders[c], r[n] * scale[i]);
+						vr += J * pupilRe[c][i];
+						vi += J * pupilIm[c][i];
+					}
+				}
+				else {
+					vr = interpolate(gRe[c], u);
+					vi = interpolate(gIm[c], u);
+				}
+				for (int k = 0; k < 2; k++) {
+					double J = FastBessel.J(orders[c], r[n] * headScale[k]);
+					vr += J * headRe[c][k];
+					vi += J * headIm[c][k];
+				}
+				I += weights[c] * (vr * vr + vi * vi);
+			}
+			// Factor 3 to keep the scale of the Simpson sums
+			h[n] = 9.0 * I;
+		}
+		return h;
+	}
+
+	// Cubic (Catmull-Rom) interpolation of g at the fractional index u
+	private double interpolate(double[] g, double u) {
+		int j = Math.min(Mr - 3, (int) Math.floor(u));
+		double t = u - j;
+		double p0 = g[j - 1];
+		double p1 = g[j];
+		double p2 = g[j + 1];
+		double p3 = g[j + 2];
+		return p1 + 0.5 * t * (p2 - p0 + t * (2.0 * p0 - 5.0 * p1 + 4.0 * p2 - p3 + t * (3.0 * (p1 - p2) + p3 - p0)));
+	}
+
+	// Inverse of the Bessel scale by bisection, the scale is increasing
+	private static double getRho(DiffractionIntegrand integrand, double s, double a, double b) {
+		double lo = a;
+		double hi = b;
+		for (int iter = 0; iter < 60; iter++) {
+			double mid = 0.5 * (lo + hi);
+			if (integrand.getBesselScale(mid) < s)
+				lo = mid;
+			else
+				hi = mid;
+		}
+		return 0.5 * (lo + hi);
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+/**
+ * State of the adaptive Simpson refinement at one radius, saved at the end
+ * of a calculation: the level of the grid, the Simpson sums, the last
+ * approximation and the number of consecutive successful approximations.
+ * A later calculation at a higher accuracy resumes the refinement from this
+ * state instead of restarting from the coarsest grid.
+ */
+public class IntegrationState {
+
+	// Level of the grid, N = 2^level sub-intervals; 0 if not saved
+	int			level	= 0;
+	int			successes;
+	double		approximation;
+
+	double[]	sumOddIndex;
+	double[]	sumEvenIndex;
+	double[]	valueX0;
+	double[]	valueXn;
+
+	public boolean isSaved() {
+		return level > 0;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	void save(int level, int successes, double approximation, double[] sumOddIndex, double[] sumEvenIndex, double[] valueX0, double[] valueXn) {
+		this.level = level;
+		this.successes = successes;
+		this.approximation = approximation;
+		this.sumOddIndex = sumOddIndex.clone();
+		this.sumEvenIndex = sumEvenIndex.clone();
+		this.valueX0 = valueX0.clone();
+		this.valueXn = valueXn.clone();
+	}
+}
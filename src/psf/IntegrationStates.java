@@ -0,0 +1,113 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * States of the adaptive Simpson refinement of every radius of every plane,
+ * see IntegrationState. They are kept across the runs having the same
+ * parameters but the accuracy, so that a run at a higher accuracy resumes
+ * the refinement instead of restarting it. At most MAX_STATES radii are
+ * kept; the other radii are computed without a state.
+ * 
+ * The states are kept by RadialPSF if setResumeIntegration() is set, and
+ * looked up by RadialExecution for every radius.
+ */
+public class IntegrationStates {
+
+	private static final int										MAX_STATES	= 1 << 18;
+
+	// Parameters of the states, null if none
+	private String													key;
+	private ArrayList<ConcurrentHashMap<Double, IntegrationState>>	planes;
+	private int														stored		= 0;
+
+	/**
+	 * Starts a run having the parameters 'key' and nz planes; the states of
+	 * other parameters are released.
+	 */
+	public synchronized void open(String key, int nz) {
+		if (key.equals(this.key) && planes != null && planes.size() == nz)
+			return;
+		planes = new ArrayList<ConcurrentHashMap<Double, IntegrationState>>();
+		for (int z = 0; z < nz; z++)
+			planes.add(new ConcurrentHashMap<Double, IntegrationState>());
+		this.key = key;
+		stored = 0;
+	}
+
+	/**
+	 * Releases the states.
+	 */
+	public synchronized void reset() {
+		planes = null;
+		key = null;
+		stored = 0;
+	}
+
+	/**
+	 * State of the radius r of the plane z, created if it has not been
+	 * saved; null if the states are released or if MAX_STATES are kept.
+	 */
+	public IntegrationState get(int z, double r) {
+		ArrayList<ConcurrentHashMap<Double, IntegrationState>> states = planes;
+		if (states == null || z < 0 || z >= states.size())
+			return null;
+		ConcurrentHashMap<Double, IntegrationState> plane = states.get(z);
+		IntegrationState state = plane.get(r);
+		if (state != null)
+			return state;
+		synchronized (this) {
+			if (stored >= MAX_STATES)
+				return null;
+			stored++;
+		}
+		state = new IntegrationState();
+		IntegrationState previous = plane.putIfAbsent(r, state);
+		return (previous == null ? state : previous);
+	}
+}
@@ -0,0 +1,386 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Simpson approximation for the Kirchhoff diffraction integral, shared by all
+ * the radially symmetric optical models. The engine owns the quadrature, the
+ * stopping conditions and the intermediate sums; the optical model only
+ * provides the integrand.
+ * 
+ * The refinement of every radius starts from the coarsest level, so that
+ * the result of a radius does not depend on the radii computed before it by
+ * the same engine, nor on the split of a profile between the workers.
+ * 
+ * The refinement of a radius can be resumed from the IntegrationState
+ * saved by a previous calculation, see calculate(double, IntegrationState):
+ * a higher accuracy only requires the K - k consecutive approximations which
+ * are missing, k being the number of the saved state.
+ * 
+ * Alternatively, the engine uses a composite Gauss-Legendre quadrature with
+ * fixed nodes, see setGaussLegendre(). Its cost is known in advance and the
+ * pupil function is sampled only once per plane.
+ * 
+ * When the integrand oscillates more than FILON_PERIODS times over the
+ * range, which happens far from focus and at large radii, the adaptive
+ * Simpson approximation is replaced by the Filon-type quadrature of
+ * FilonDiffraction, whose cost does not grow with the oscillations. This
+ * applies to the scalar integrands only, see setFilon().
+ * 
+ * A calculation is cancelled within CHECK evaluations of the integrand once
+ * the flag given to setCancellation() is raised; it then returns NaN. The
+ * state of a Simpson refinement cancelled between two levels is saved, so
+ * that the refinement of the radius resumes at that level.
+ */
+public class KirchhoffDiffraction {
+
+	// Stopping conditions:
+	// Difference between consecutive approximations.
+	private double					TOL				= 1E-1;
+	// The number of consecutive approximations that meet the TOL criterion
+	private int						K;
+	// Maximum number of iterations
+	private int						MAX_ITERATIONS	= 10000;
+
+	private DiffractionIntegrand	integrand;
+	private int						accuracy;
+
+	// Workspace of the sums, reused for every radius
+	private double[]				sumOddIndex;
+	private double[]				sumEvenIndex;
+	private double[]				valueX0;
+	private double[]				valueXn;
+	private double[]				value;
+
+	// Composite Gauss-Legendre quadrature, null for the adaptive Simpson
+	private double[]				nodes;
+	private double[]				scales;
+	private double[][]				pupil;
+
+	// Oscillatory quadrature, null if disabled or not supported
+	private static final double		FILON_PERIODS	= 16.0;
+	private FilonDiffraction		filon;
+
+	// Cancellation, checked every CHECK evaluations; null if not cancellable
+	private static final int		CHECK			= 1 << 12;
+	private AtomicBoolean			cancelled;
+
+	// Instrumentation
+	private long					evaluations		= 0;
+	private long					iterations		= 0;
+
+	public KirchhoffDiffraction(DiffractionIntegrand integrand, int accuracy) {
+		this.integrand = integrand;
+		this.K = integrand.getRepetitions(accuracy);
+		this.accuracy = accuracy;
+		int nc = 2 * integrand.getComponents();
+		sumOddIndex = new double[nc];
+		sumEvenIndex = new double[nc];
+		valueX0 = new double[nc];
+		valueXn = new double[nc];
+		value = new double[nc];
+		setFilon(true);
+	}
+
+	/**
+	 * Enables or disables the Filon-type quadrature for the oscillatory
+	 * cases. It is enabled by default for the scalar integrands.
+	 */
+	public void setFilon(boolean enabled) {
+		if (enabled && FilonDiffraction.isSupported(integrand))
+			filon = new FilonDiffraction(integrand, accuracy);
+		else
+			filon = null;
+	}
+
+	/**
+	 * Switches to the composite Gauss-Legendre quadrature for radii up to
+	 * rMax. The number of panels follows the number of oscillations of the
+	 * integrand, the number of nodes per panel the accuracy. The pupil
+	 * function and the Bessel scale are sampled once, here.
+	 */
+	public void setGaussLegendre(double rMax) {
+		double[][] table = GaussLegendre.getTable(GaussLegendre.getOrder(accuracy));
+		double[] x = table[0];
+		double[] w = table[1];
+		int panels = 1 + (int) Math.ceil(integrand.getNumberOfPeriods(rMax));
+		panels = Math.max(2, Math.min(MAX_ITERATIONS, panels));
+
+		double a = integrand.getLowerLimit();
+		double b = integrand.getUpperLimit();
+		double half = (b - a) / panels / 2.0;
+		int nc = 2 * integrand.getComponents();
+		int n = x.length * panels;
+		nodes = new double[n];
+		scales = new double[n];
+		pupil = new double[nc][n];
+		double[] A = new double[nc / 2];
+		for (int p = 0; p < panels; p++) {
+			double center = a + (2 * p + 1) * half;
+			for (int i = 0; i < x.length; i++) {
+				int j = p * x.length + i;
+				nodes[j] = center + half * x[i];
+				scales[j] = integrand.getBesselScale(nodes[j]);
+				double W = integrand.getPhase(nodes[j]);
+				double cosW = Math.cos(W);
+				double sinW = Math.sin(W);
+				integrand.getAmplitude(nodes[j], A);
+				// Factor 3 to keep the scale of the Simpson sums
+				double weight = 3.0 * half * w[i];
+				for (int c = 0; c < nc / 2; c++) {
+					pupil[2 * c][j] = weight * A[c] * cosW;
+					pupil[2 * c + 1][j] = weight * A[c] * sinW;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Uses the composite Gauss-Legendre quadrature of another engine of the
+	 * same integrand, set by setGaussLegendre(double). The nodes and the
+	 * sampled pupil function are shared, they are not modified.
+	 */
+	public void setGaussLegendre(KirchhoffDiffraction quadrature) {
+		nodes = quadrature.nodes;
+		scales = quadrature.scales;
+		pupil = quadrature.pupil;
+	}
+
+	/**
+	 * Flag raised to cancel the calculations in progress, null if they are not
+	 * cancellable.
+	 */
+	public void setCancellation(AtomicBoolean cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	public boolean isCancelled() {
+		return cancelled != null && cancelled.get();
+	}
+
+	// calculate()
+	// Simpson approximation for the Kirchhoff diffraction integral
+	// 'r' is the radial distance of the detector relative to the optical axis.
+	public double calculate(double r) {
+		return calculate(r, null);
+	}
+
+	// calculate()
+	// Same as calculate(r), the adaptive Simpson refinement is resumed from
+	// 'state' if it has been saved, and 'state' is saved at the end. The state
+	// is not used by the Gauss-Legendre and Filon quadratures. Returns NaN if
+	// the calculation has been cancelled.
+	public double calculate(double r, IntegrationState state) {
+		if (isCancelled())
+			return Double.NaN;
+		if (nodes != null)
+			return gaussLegendre(r);
+		if (filon != null && filon.getNumberOfPeriods(r) > FILON_PERIODS) {
+			long before = filon.getNumberOfEvaluations();
+			double I = filon.calculate(r);
+			evaluations += filon.getNumberOfEvaluations() - before;
+			iterations++;
+			return I;
+		}
+		double a = integrand.getLowerLimit(); // Lower and upper limits of the integral
+		double b = integrand.getUpperLimit();
+		int nc = 2 * integrand.getComponents(); // real and imaginary parts
+		int N; // number of sub-intervals
+		int k; // number of consecutive successful approximations
+		double del; // integration interval
+		int iteration; // number of iterations, also the level of the grid
+		double curDifference; // Stopping criterion
+
+		double rho;
+
+		double curI = 0.0, prevI = 0.0;
+
+		int start;
+		boolean resumed = (state != null && state.isSaved());
+		if (resumed) {
+			// Resumed refinement, the consecutive successful approximations
+			// of the previous calculation count toward the K of the current
+			// accuracy
+			start = state.level;
+			N = 1 << start;
+			del = (b - a) / N;
+			k = state.successes;
+			iteration = start;
+			System.arraycopy(state.sumEvenIndex, 0, sumEvenIndex, 0, nc);
+			System.arraycopy(state.sumOddIndex, 0, sumOddIndex, 0, nc);
+			System.arraycopy(state.valueX0, 0, valueX0, 0, nc);
+			System.arraycopy(state.valueXn, 0, valueXn, 0, nc);
+			curI = state.approximation;
+		}
+		else {
+			// Initialization of the Simpson sum at the starting level, N = 2^level
+			start = 1;
+			N = 1 << start;
+			del = (b - a) / N;
+			k = 0;
+			iteration = start;
+			for (int c = 0; c < nc; c++) {
+				sumEvenIndex[c] = 0.0;
+				sumOddIndex[c] = 0.0;
+			}
+			for (int n = 1; n < N; n++) {
+				if (n % CHECK == 0 && isCancelled())
+					return Double.NaN;
+				rho = a + n * del;
+				evaluate(rho, DiffractionIntegrand.getNode(start, n), r, value);
+				double[] sum = (n % 2 == 1 ? sumOddIndex : sumEvenIndex);
+				for (int c = 0; c < nc; c++)
+					sum[c] += value[c];
+			}
+			evaluate(a, DiffractionIntegrand.getNode(start, 0), r, valueX0);
+			evaluate(b, DiffractionIntegrand.getNode(start, N), r, valueXn);
+			curI = intensity(valueX0, sumEvenIndex, sumOddIndex, valueXn) * del * del;
+		}
+
+		prevI = curI;
+		curDifference = TOL;
+
+		// Finer sampling grid until we meet the TOL value with the specified
+		// number of repetitions, K
+		while (k < K && iteration < MAX_ITERATIONS) {
+			// Cancelled between two levels, the sums are consistent
+			if (isCancelled()) {
+				if (state != null)
+					state.save(iteration, k, curI, sumOddIndex, sumEvenIndex, valueX0, valueXn);
+				return Double.NaN;
+			}
+			iteration++;
+			N *= 2;
+			del = del / 2;
+			for (int c = 0; c < nc; c++) {
+				sumEvenIndex[c] += sumOddIndex[c];
+				sumOddIndex[c] = 0.0;
+			}
+			for (int n = 1; n < N; n = n + 2) {
+				// Cancelled within the level, the state is not saved
+				if (n % CHECK == 1 && n > 1 && isCancelled())
+					return Double.NaN;
+				rho = a + n * del;
+				evaluate(rho, DiffractionIntegrand.getNode(iteration, n), r, value);
+				for (int c = 0; c < nc; c++)
+					sumOddIndex[c] += value[c];
+			}
+			curI = intensity(valueX0, sumEvenIndex, sumOddIndex, valueXn) * del * del;
+
+			// Relative error between consecutive approximations
+			if (prevI == 0.0)
+				curDifference = Math.abs((prevI - curI) / 1E-5);
+			else
+				curDifference = Math.abs((prevI - curI) / curI);
+
+			if (curDifference <= TOL)
+				k++;
+			else
+				k = 0;
+
+			prevI = curI;
+		}
+		iterations += iteration - start + (resumed ? 0 : 1);
+		if (state != null)
+			state.save(iteration, k, curI, sumOddIndex, sumEvenIndex, valueX0, valueXn);
+		return curI;
+	}
+
+	// gaussLegendre()
+	// Composite Gauss-Legendre approximation on the fixed nodes
+	private double gaussLegendre(double r) {
+		int nc = integrand.getComponents();
+		FastBessel bessel = FastBessel.getTable();
+		// Real and imaginary sums of every component
+		for (int c = 0; c < 2 * nc; c++)
+			value[c] = 0.0;
+		for (int j = 0; j < nodes.length; j++) {
+			if (j % CHECK == CHECK - 1 && isCancelled())
+				return Double.NaN;
+			double x = r * scales[j];
+			double J0 = bessel.tabulatedJ0(x);
+			double J1 = (nc > 1 ? bessel.tabulatedJ1(x) : 0.0);
+			for (int c = 0; c < nc; c++) {
+				int order = integrand.getOrder(c);
+				double J = (order == 0 ? J0 : (order == 1 ? J1 : FastBessel.J2(x, J0, J1)));
+				value[2 * c] += J * pupil[2 * c][j];
+				value[2 * c + 1] += J * pupil[2 * c + 1][j];
+			}
+		}
+		double I = 0.0;
+		for (int c = 0; c < nc; c++)
+			I += integrand.getWeight(c) * (value[2 * c] * value[2 * c] + value[2 * c + 1] * value[2 * c + 1]);
+		evaluations += nodes.length;
+		iterations++;
+		return I;
+	}
+
+	public long getNumberOfEvaluations() {
+		return evaluations;
+	}
+
+	public long getNumberOfIterations() {
+		return iterations;
+	}
+
+	// 'node' is the index of rho on the dyadic grid of the run tables
+	private void evaluate(double rho, int node, double r, double[] value) {
+		evaluations++;
+		integrand.integrand(rho, node, r, value);
+	}
+
+	// Squared modulus of the Simpson sums, weighted over the components
+	private double intensity(double[] valueX0, double[] sumEvenIndex, double[] sumOddIndex, double[] valueXn) {
+		double I = 0.0;
+		for (int c = 0; c < integrand.getComponents(); c++) {
+			double realSum = valueX0[2 * c] + 2.0 * sumEvenIndex[2 * c] + 4.0 * sumOddIndex[2 * c] + valueXn[2 * c];
+			double imagSum = valueX0[2 * c + 1] + 2.0 * sumEvenIndex[2 * c + 1] + 4.0 * sumOddIndex[2 * c + 1] + valueXn[2 * c + 1];
+			I += integrand.getWeight(c) * (realSum * realSum + imagSum * imagSum);
+		}
+		return I;
+	}
+}
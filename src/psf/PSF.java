@@ -44,6 +44,8 @@
 
 package psf;
 
+import java.util.ArrayList;
+
 import javax.swing.JPanel;
 
 import bilib.commons.job.ExecutionMode;
@@ -70,6 +72,15 @@ abstract public class PSF extends Job implements PoolResponder {
 	public double		lambda;					// in nm
 	private Pool		pool;
 
+	protected ExecutionPolicy	policy		= new ExecutionPolicy();
+
+	// Workers of the run, created by process() from the policy and released
+	// at the end of the run; null out of a run
+	protected ForkJoinScheduler	scheduler;
+
+	// Directory of the checkpoints of the runs, null if disabled
+	protected String			checkpointDirectory;
+
 	public Data3D getData() {
 		return data;
 	}
@@ -111,19 +122,86 @@ abstract public class PSF extends Job implements PoolResponder {
 		}
 		fetchParameters();
 
-		data = new Data3D(nx, ny, nz);
-		progress(4, "Init " + getShortname() + "...");
-		pool = new Pool(shortname, this);
-		generate(pool);
+		scheduler = policy.createScheduler();
+		try {
+			data = createData();
+			progress(4, "Init " + getShortname() + "...");
+			pool = new RunPool(shortname, this);
+			generate(pool);
+
+			progress(5, "Executing " + getShortname() + "...");
+			execute(pool);
+
+			data.determineMaximumAndEnergy();
+			data.estimateFWHM();
+			data.rescale(scale, data.max.value);
+		}
+		finally {
+			policy.release(scheduler);
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * Thread budget of the runs, see ExecutionPolicy.
+	 */
+	public void setExecutionPolicy(ExecutionPolicy policy) {
+		this.policy = (policy == null ? new ExecutionPolicy() : policy);
+	}
+
+	public ExecutionPolicy getExecutionPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Directory where the completed planes are checkpointed, see Checkpoint;
+	 * null or empty to disable. Used by the radially symmetric models.
+	 */
+	public void setCheckpointDirectory(String directory) {
+		this.checkpointDirectory = (directory == null || directory.trim().equals("") ? null : directory.trim());
+	}
+
+	public String getCheckpointDirectory() {
+		return checkpointDirectory;
+	}
+
+	/**
+	 * Executes the jobs registered by generate() and waits for them, in the
+	 * calling thread if the scheduler of the run has a single worker, else on
+	 * its workers; the pool keeps them for the abort.
+	 */
+	protected void execute(Pool pool) {
+		if (scheduler == null || scheduler.getParallelism() == 1 || !(pool instanceof RunPool)) {
+			pool.execute(ExecutionMode.MULTITHREAD_NO);
+			return;
+		}
+		ArrayList<Job> registered = ((RunPool) pool).jobs;
+		Job[] jobs = registered.toArray(new Job[registered.size()]);
+		double[] costs = new double[jobs.length];
+		for (int i = 0; i < jobs.length; i++)
+			costs[i] = 1.0;
+		scheduler.execute(jobs, costs);
+	}
 
-		progress(5, "Executing " + getShortname() + "...");
-		pool.execute(ExecutionMode.MULTITHREAD_SYNCHRONIZED);
+	/**
+	 * Releases the planes kept from an aborted run for the next run, if the
+	 * model keeps them; called when the parameters change.
+	 */
+	public void resetCompletedPlanes() {
+	}
 
-		data.determineMaximumAndEnergy();
-		data.estimateFWHM();
-		data.rescale(scale, data.max.value);
+	/**
+	 * Volume of the run, allocated before generate().
+	 */
+	protected Data3D createData() {
+		return new Data3D(nx, ny, nz);
 	}
 
+	/**
+	 * Plane z of the volume. Depending on the model, it is the stored plane or
+	 * a copy expanded from the radial profile of the plane: a modification
+	 * is only kept if it is stored back by setPlane().
+	 */
 	public double[] getPlane(int z) {
 		return data.getPlane(z);
 	}
@@ -140,6 +218,14 @@ abstract public class PSF extends Job implements PoolResponder {
 		return fullname;
 	}
 
+	/**
+	 * Parameters which determine the computed volume, except the accuracy
+	 * and the output scale; the models append their own parameters.
+	 */
+	public String getParameterKey() {
+		return shortname + " " + nx + "x" + ny + "x" + nz + " res=" + resLateral + "," + resAxial + " NA=" + NA + " lambda=" + lambda;
+	}
+
 	abstract public void generate(Pool pool);
 
 	abstract public String checkSize(int nx, int ny, int nz);
@@ -167,4 +253,21 @@ abstract public class PSF extends Job implements PoolResponder {
 		getPool().fire(event);
 	}
 
+	/**
+	 * Pool of the run, which records the jobs registered by generate().
+	 */
+	private static class RunPool extends Pool {
+
+		private ArrayList<Job>	jobs	= new ArrayList<Job>();
+
+		public RunPool(String name, PoolResponder responder) {
+			super(name, responder);
+		}
+
+		@Override
+		public void register(Job job) {
+			super.register(job);
+			jobs.add(job);
+		}
+	}
 }
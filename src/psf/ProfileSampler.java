@@ -0,0 +1,170 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+/**
+ * Adaptive radial grid of the profile of a plane, for the linear
+ * interpolation. The profile is first computed on a coarse uniform grid;
+ * the intervals where the profile is below the tolerance are final, the
+ * others are bisected once, then where the interpolation error, estimated
+ * from the local curvature of the profile, exceeds the tolerance. The
+ * tolerance is relative to the maximum of the plane; the intervals are not
+ * bisected below MIN_STEP.
+ */
+public class ProfileSampler {
+
+	// Smallest interval in [pixels]
+	private static final double	MIN_STEP	= 1.0 / 16.0;
+
+	private RadialPSF			psf;
+
+	// Instrumentation
+	private long				samples		= 0;
+	private long				planes		= 0;
+
+	public ProfileSampler(RadialPSF psf) {
+		this.psf = psf;
+	}
+
+	/**
+	 * Radial profile of the plane z from 0 to rEnd, in units of [pixels],
+	 * starting from a uniform grid of the given step. Returns null if the
+	 * computation has been aborted.
+	 */
+	public RadialProfile sample(int z, double rEnd, double step, double tolerance) {
+		int n = Math.max(2, (int) Math.ceil(rEnd / step));
+		double[] r = new double[n + 1];
+		for (int i = 0; i <= n; i++)
+			r[i] = rEnd * i / n;
+		double[] h = psf.computeProfile(z, r);
+		if (h == null)
+			return null;
+		double max = 0.0;
+		for (int i = 0; i <= n; i++)
+			max = Math.max(max, Math.abs(h[i]));
+
+		// The intervals where the profile is below the tolerance are final,
+		// the others are bisected once, then where the interpolation error
+		// estimated from the curvature exceeds the tolerance
+		double tol = tolerance * max;
+		boolean[] refine = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			double local = 0.0;
+			for (int k = Math.max(0, i - 1); k <= Math.min(n, i + 2); k++)
+				local = Math.max(local, Math.abs(h[k]));
+			refine[i] = local > tol;
+		}
+		while (true) {
+			int count = 0;
+			for (int i = 0; i < r.length - 1; i++)
+				if (refine[i] && r[i + 1] - r[i] >= 2.0 * MIN_STEP)
+					count++;
+			if (count == 0)
+				break;
+			double[] middle = new double[count];
+			count = 0;
+			for (int i = 0; i < r.length - 1; i++)
+				if (refine[i] && r[i + 1] - r[i] >= 2.0 * MIN_STEP)
+					middle[count++] = 0.5 * (r[i] + r[i + 1]);
+			double[] hm = psf.computeProfile(z, middle);
+			if (hm == null)
+				return null;
+
+			// Merge of the middles in the grid
+			double[] r2 = new double[r.length + count];
+			double[] h2 = new double[r.length + count];
+			boolean[] split = new boolean[r2.length - 1];
+			int j = 0;
+			int k = 0;
+			for (int i = 0; i < r.length - 1; i++) {
+				r2[j] = r[i];
+				h2[j] = h[i];
+				if (refine[i] && r[i + 1] - r[i] >= 2.0 * MIN_STEP) {
+					r2[j + 1] = middle[k];
+					h2[j + 1] = hm[k++];
+					split[j] = split[j + 1] = true;
+					j += 2;
+				}
+				else
+					j++;
+			}
+			r2[j] = r[r.length - 1];
+			h2[j] = h[h.length - 1];
+			r = r2;
+			h = h2;
+
+			// Interpolation error d^2 * |h''| / 8 of the split intervals
+			double[] curvature = new double[r.length];
+			for (int i = 1; i < r.length - 1; i++) {
+				double slope0 = (h[i] - h[i - 1]) / (r[i] - r[i - 1]);
+				double slope1 = (h[i + 1] - h[i]) / (r[i + 1] - r[i]);
+				curvature[i] = Math.abs(2.0 * (slope1 - slope0) / (r[i + 1] - r[i - 1]));
+			}
+			refine = new boolean[r.length - 1];
+			for (int i = 0; i < r.length - 1; i++) {
+				double d = r[i + 1] - r[i];
+				refine[i] = split[i] && d * d * Math.max(curvature[i], curvature[i + 1]) / 8.0 > tol;
+			}
+		}
+		synchronized (this) {
+			samples += r.length;
+			planes++;
+		}
+		return new RadialProfile(r, h);
+	}
+
+	public synchronized void reset() {
+		samples = 0;
+		planes = 0;
+	}
+
+	/**
+	 * Average number of samples of the profiles sampled since the last
+	 * reset(), 0 if none.
+	 */
+	public synchronized long getSamplesPerPlane() {
+		return (planes == 0 ? 0 : samples / planes);
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+import psf.bornwolf.BornWolfPSF;
+import psf.gibsonlanni.GibsonLanniPSF;
+import psf.richardswolf.RichardsWolfPSF;
+import psf.torgovarga.TorokVargaPSF;
+import psf.vri_gibsonlanni.VRIGLPSF;
+
+/**
+ * Calibration of the radial interpolation kernels: for every kernel and
+ * accuracy, the smallest number of radial samples per pixel whose
+ * interpolation error stays below RadialPSF.getTolerance(). The error is
+ * measured against a profile sampled at REFERENCE samples per pixel, on a
+ * plane in focus, a plane halfway and the farthest plane. The profiles are
+ * computed with the Gauss-Legendre method at the best accuracy, so that the
+ * error of the quadrature does not hide the error of the interpolation.
+ * 
+ * The report gives the pair of the number of samples and the kernel which
+ * needs the fewest samples, per model and accuracy.
+ */
+public class RadialCalibration {
+
+	// Samples per pixel of the reference profile
+	private static final int		REFERENCE	= 16;
+
+	// Candidate densities, in samples per pixel
+	private static final double[]	DENSITIES	= new double[] { 0.25, 0.5, 0.75, 1.0, 1.5, 2.0, 3.0, 4.0, 6.0, 8.0 };
+
+	public static void main(String[] args) {
+		RadialPSF[] models = new RadialPSF[] { new GibsonLanniPSF(), new BornWolfPSF(), new RichardsWolfPSF(), new TorokVargaPSF(), new VRIGLPSF() };
+		for (RadialPSF psf : models) {
+			psf.setOpticsParameters(1.4, 610);
+			psf.setResolutionParameters(100, 250);
+			psf.setOutputParameters(128, 128, 32, 0, 0);
+			psf.fetchParameters();
+			System.out.print(report(psf));
+		}
+	}
+
+	/**
+	 * Report of the calibration of a model whose parameters are already
+	 * fetched. The method, accuracy and interpolation of the model are
+	 * restored afterwards.
+	 */
+	public static String report(RadialPSF psf) {
+		int method = psf.method;
+		int accuracy = psf.accuracy;
+		int interpolation = psf.interpolation;
+		psf.rewind();
+		psf.method = RadialPSF.METHOD_GAUSS;
+		psf.accuracy = 2;
+		psf.interpolation = RadialProfile.INTERPOLATION_LINEAR;
+
+		int[] planes = new int[] { psf.nz / 2, psf.nz / 4, 0 };
+		double rEnd = psf.getMaximumRadius();
+		double[] reference = RadialProfile.getUniformRadii(rEnd, REFERENCE);
+		double[][] exact = new double[planes.length][];
+		for (int p = 0; p < planes.length; p++)
+			exact[p] = psf.computeProfile(planes[p], reference);
+
+		String[] names = RadialProfile.getInterpolations();
+		String report = "";
+		for (int level = 0; level <= 2; level++) {
+			double tol = RadialPSF.getTolerance(level);
+			double best = Double.MAX_VALUE;
+			int kernel = 0;
+			String line = psf.getShortname() + " accuracy " + level + ":";
+			for (int k = 0; k < names.length; k++) {
+				double density = Double.NaN;
+				for (int d = 0; d < DENSITIES.length && Double.isNaN(density); d++) {
+					double error = 0.0;
+					for (int p = 0; p < planes.length; p++)
+						error = Math.max(error, getError(psf, planes[p], k, DENSITIES[d], rEnd, reference, exact[p]));
+					if (error <= tol)
+						density = DENSITIES[d];
+				}
+				line += " " + names[k] + " " + (Double.isNaN(density) ? "-" : "" + density);
+				if (!Double.isNaN(density) && density < best) {
+					best = density;
+					kernel = k;
+				}
+			}
+			report += line + ", best " + names[kernel] + " at " + best + " samples per pixel\n";
+		}
+
+		psf.method = method;
+		psf.accuracy = accuracy;
+		psf.interpolation = interpolation;
+		return report;
+	}
+
+	// Largest interpolation error relative to the maximum of the profile
+	private static double getError(RadialPSF psf, int z, int kernel, double density, double rEnd, double[] reference, double[] exact) {
+		double[] r;
+		if (kernel == RadialProfile.INTERPOLATION_CHEBYSHEV)
+			r = RadialProfile.getChebyshevRadii(rEnd, density);
+		else
+			r = RadialProfile.getUniformRadii(rEnd, density);
+		RadialProfile profile = new RadialProfile(r, psf.computeProfile(z, r), kernel);
+		double max = 0.0;
+		double error = 0.0;
+		for (int n = 0; n < reference.length; n++) {
+			max = Math.max(max, Math.abs(exact[n]));
+			error = Math.max(error, Math.abs(profile.getValue(reference[n]) - exact[n]));
+		}
+		return error / max;
+	}
+}
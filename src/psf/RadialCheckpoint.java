@@ -0,0 +1,143 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+import java.io.File;
+
+/**
+ * Checkpoint on disk of the run of a radially symmetric model, see
+ * Checkpoint: the profile of every completed plane is written if a
+ * checkpoint directory is set, and a restarted run having the same
+ * parameters and accuracy reads it instead of computing the plane again.
+ * The checkpoint is deleted when the run completes.
+ */
+public class RadialCheckpoint {
+
+	// Checkpoint of the run on disk, null if disabled
+	private Checkpoint	checkpoint;
+	private int			restored	= 0;
+	private int			unsaved		= 0;
+
+	/**
+	 * Clears the checkpoint and the counters of the previous run.
+	 */
+	public synchronized void rewind() {
+		checkpoint = null;
+		restored = 0;
+		unsaved = 0;
+	}
+
+	/**
+	 * Starts a run having the parameters 'key', with the checkpoint in
+	 * 'directory', null to disable it.
+	 */
+	public synchronized void open(String key, String directory) {
+		checkpoint = (directory == null ? null : new Checkpoint(directory, key));
+	}
+
+	/**
+	 * The run has completed: the checkpoint is deleted.
+	 */
+	public synchronized void close() {
+		if (checkpoint != null)
+			checkpoint.clear();
+	}
+
+	/**
+	 * Profile of the plane z read from the checkpoint, null if none or if
+	 * the checkpoint is disabled.
+	 */
+	public RadialProfile restore(int z) {
+		Checkpoint disk = getCheckpoint();
+		if (disk == null)
+			return null;
+		RadialProfile profile = disk.load(z);
+		if (profile == null)
+			return null;
+		synchronized (this) {
+			restored++;
+		}
+		return profile;
+	}
+
+	/**
+	 * Writes the profile of the completed plane z, if the checkpoint is
+	 * enabled.
+	 */
+	public void save(int z, RadialProfile profile) {
+		Checkpoint disk = getCheckpoint();
+		if (disk != null && !disk.save(z, profile)) {
+			synchronized (this) {
+				unsaved++;
+			}
+		}
+	}
+
+	private synchronized Checkpoint getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * Number of planes of the run read from the checkpoint.
+	 */
+	public synchronized int getNumberOfRestored() {
+		return restored;
+	}
+
+	/**
+	 * Number of planes of the run which could not be written to the
+	 * checkpoint.
+	 */
+	public synchronized int getNumberOfUnsaved() {
+		return unsaved;
+	}
+
+	/**
+	 * Directory of the checkpoint of the run, null if disabled.
+	 */
+	public synchronized File getDirectory() {
+		return (checkpoint == null ? null : checkpoint.getDirectory());
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+/**
+ * Cut-off of a radial profile computed outward: the profile is negligible
+ * past the radius where it has stayed under a threshold, relative to the
+ * largest value so far, over a margin window. The margin covers several
+ * rings, so a dark ring does not cut the profile.
+ */
+public class RadialCutoff {
+
+	private double	threshold;
+	private double	window;
+
+	private double	max		= 0.0;
+	private double	start	= -1.0;
+
+	/**
+	 * Threshold relative to the maximum of the profile, and margin window in
+	 * the units of the radii.
+	 */
+	public RadialCutoff(double threshold, double window) {
+		this.threshold = threshold;
+		this.window = window;
+	}
+
+	/**
+	 * Adds the value of the profile at the next radius, increasing. Returns
+	 * true if the profile is negligible from this radius on.
+	 */
+	public boolean add(double radius, double value) {
+		double v = Math.abs(value);
+		if (v > max)
+			max = v;
+		if (v > threshold * max)
+			start = -1.0;
+		else if (start < 0.0)
+			start = radius;
+		return start >= 0.0 && radius - start >= window;
+	}
+}
@@ -0,0 +1,398 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Volume of a PSF having a radial symmetry in the lateral plane, stored as
+ * the radial profiles h(r) of the planes. The planes are expanded on demand
+ * by interpolating the profile at the radius of every class of pixels of the
+ * RadialMap; the statistics are computed on the classes, weighted by their
+ * number of pixels.
+ * 
+ * The planes returned by getPlane() are copies: the modifications have to be
+ * stored back by setPlane(), which keeps the plane in full. The pointwise
+ * operations (multiply, clip, rescale) are applied to the full planes and
+ * recorded for the profiles, in order.
+ * 
+ * With a scheduler, the classes and the pixels of a plane are expanded in
+ * parallel chunks, for the wide volumes having fewer planes than workers.
+ */
+public class RadialData3D extends Data3D {
+
+	private RadialMap				map;
+	private RadialProfile[]			profiles;
+
+	// Pointwise operations on the values, and first operation of every plane
+	private ArrayList<Operation>	operations	= new ArrayList<Operation>();
+	private int[]					start;
+
+	// Classes or pixels per parallel chunk, and the scheduler of the chunks,
+	// null to expand the planes serially
+	private static final int		CHUNK		= 1 << 14;
+	private ForkJoinScheduler		scheduler;
+
+	public RadialData3D(RadialMap map, int nz) {
+		super(map.getWidth(), map.getHeight(), nz, new double[nz][]);
+		this.map = map;
+		this.profiles = new RadialProfile[nz];
+		this.start = new int[nz];
+	}
+
+	public RadialMap getMap() {
+		return map;
+	}
+
+	/**
+	 * Expands the planes in parallel chunks on the scheduler, or serially if
+	 * null or once the scheduler has been shut down.
+	 */
+	public void setScheduler(ForkJoinScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	private boolean isParallel() {
+		return scheduler != null && !scheduler.isShutdown();
+	}
+
+	/**
+	 * Radial profile of the plane z, in units of [pixels], before the
+	 * pointwise operations; null if the plane is stored in full.
+	 */
+	public RadialProfile getProfile(int z) {
+		return profiles[z];
+	}
+
+	public void setProfile(int z, RadialProfile profile) {
+		profiles[z] = profile;
+		start[z] = operations.size();
+		data[z] = null;
+	}
+
+	/**
+	 * Values of the plane z at the radius of every class of pixels, or null
+	 * if the plane is stored in full.
+	 */
+	public double[] getClassValues(int z) {
+		if (profiles[z] == null)
+			return null;
+		double[] values = new double[map.getNumberOfClasses()];
+		if (isParallel() && values.length >= 2 * CHUNK)
+			scheduler.invoke(new Chunk(z, values, null, 0, values.length));
+		else
+			evaluate(z, values, 0, values.length);
+		return values;
+	}
+
+	// Values of the classes 'from' to 'to'-1 of the plane z
+	private void evaluate(int z, double[] values, int from, int to) {
+		double[] radii = map.getRadii();
+		for (int c = from; c < to; c++)
+			values[c] = profiles[z].getValue(radii[c]);
+		for (int i = start[z]; i < operations.size(); i++) {
+			Operation operation = operations.get(i);
+			for (int c = from; c < to; c++)
+				values[c] = operation.apply(values[c]);
+		}
+	}
+
+	/**
+	 * Volume of the same profiles on a smaller or equal lateral grid, centered
+	 * the same way; null if the grid is larger, the profiles do not cover it.
+	 * The planes stored in full are not cropped.
+	 */
+	public RadialData3D crop(int nx, int ny) {
+		if (nx > this.nx || ny > this.ny)
+			return null;
+		RadialData3D crop = new RadialData3D(new RadialMap(nx, ny), nz);
+		crop.operations.addAll(operations);
+		for (int z = 0; z < nz; z++) {
+			crop.profiles[z] = profiles[z];
+			crop.start[z] = start[z];
+		}
+		crop.determineMaximumAndEnergy();
+		return crop;
+	}
+
+	@Override
+	public double[] getPlane(int z) {
+		if (data[z] != null)
+			return data[z];
+		double[] values = getClassValues(z);
+		if (values == null)
+			return new double[nxy];
+		if (!isParallel() || nxy < 2 * CHUNK)
+			return map.gather(values);
+		double[] slice = new double[nxy];
+		scheduler.invoke(new Chunk(z, values, slice, 0, nxy));
+		return slice;
+	}
+
+	@Override
+	public double getValue(int z, int k) {
+		if (data[z] != null)
+			return data[z][k];
+		if (profiles[z] == null)
+			return 0.0;
+		double value = profiles[z].getValue(map.getRadii()[map.getClassOf(k)]);
+		for (int i = start[z]; i < operations.size(); i++)
+			value = operations.get(i).apply(value);
+		return value;
+	}
+
+	@Override
+	public void setPlane(int z, double plane[]) {
+		data[z] = plane;
+		profiles[z] = null;
+	}
+
+	@Override
+	public void putXY(int z, double plane[]) {
+		if (data[z] == null)
+			data[z] = new double[nxy];
+		System.arraycopy(plane, 0, data[z], 0, nxy);
+		profiles[z] = null;
+	}
+
+	@Override
+	public int[] getHistogram(int nbins) {
+		int histo[] = new int[nbins];
+		int[] counts = map.getCounts();
+		for (int z = 0; z < nz; z++) {
+			double[] values = getClassValues(z);
+			if (values == null) {
+				double[] slice = getPlane(z);
+				for (int k = 0; k < nxy; k++) {
+					int v = (int) (slice[k] * nbins);
+					if (v >= 0)
+						histo[v]++;
+				}
+				continue;
+			}
+			for (int c = 0; c < values.length; c++) {
+				int v = (int) (values[c] * nbins);
+				if (v >= 0)
+					histo[v] += counts[c];
+			}
+		}
+		return histo;
+	}
+
+	@Override
+	public void determineMaximumAndEnergy() {
+		max.value = -Double.MAX_VALUE;
+		energy = 0;
+		for (int z = 0; z < nz; z++) {
+			double[] values = getClassValues(z);
+			if (values == null) {
+				double[] slice = getPlane(z);
+				for (int k = 0; k < nxy; k++) {
+					energy += slice[k] * slice[k];
+					if (max.value < slice[k]) {
+						max.value = slice[k];
+						max.x = k % nx;
+						max.y = k / nx;
+						max.z = z;
+					}
+				}
+				continue;
+			}
+			int[] counts = map.getCounts();
+			int[] first = map.getFirstPixels();
+			for (int c = 0; c < values.length; c++) {
+				energy += counts[c] * values[c] * values[c];
+				if (max.value < values[c]) {
+					max.value = values[c];
+					max.x = first[c] % nx;
+					max.y = first[c] / nx;
+					max.z = z;
+				}
+			}
+		}
+	}
+
+	@Override
+	public double getMaximum(int z) {
+		double[] values = getClassValues(z);
+		if (values == null)
+			return super.getMaximum(z);
+		double max = -Double.MAX_VALUE;
+		for (int c = 0; c < values.length; c++)
+			if (max < values[c])
+				max = values[c];
+		return max;
+	}
+
+	@Override
+	public double getNorm2(int z) {
+		double[] values = getClassValues(z);
+		if (values == null)
+			return super.getNorm2(z);
+		int[] counts = map.getCounts();
+		double norm = 0.0;
+		for (int c = 0; c < values.length; c++)
+			norm += counts[c] * values[c] * values[c];
+		return norm;
+	}
+
+	@Override
+	public double getNorm2() {
+		double norm = 0.0;
+		for (int z = 0; z < nz; z++)
+			norm += getNorm2(z);
+		return norm;
+	}
+
+	@Override
+	public double[] getPlaneInformation(int z) {
+		double[] values = getClassValues(z);
+		if (values == null)
+			return super.getPlaneInformation(z);
+		int[] counts = map.getCounts();
+		double[] radii = map.getRadii();
+		double p[] = new double[4];
+		p[0] = z;
+		double maximum = -Double.MAX_VALUE;
+		double norm = 0.0, sum = 0.0, sigma2 = 0.0;
+		for (int c = 0; c < values.length; c++) {
+			maximum = Math.max(maximum, values[c]);
+			norm += counts[c] * values[c] * values[c];
+			sum += counts[c] * values[c];
+			sigma2 += counts[c] * values[c] * radii[c] * radii[c];
+		}
+		p[1] = maximum / max.value;
+		p[2] = norm / energy;
+		p[3] = Math.sqrt(sigma2 / sum);
+		return p;
+	}
+
+	@Override
+	public void multiply(final double num) {
+		apply(new Operation() {
+			public double apply(double v) {
+				return v * num;
+			}
+		});
+	}
+
+	@Override
+	public void clip(final double lower, final double upper) {
+		apply(new Operation() {
+			public double apply(double v) {
+				double w = (v > upper ? upper : v);
+				return (w < lower ? lower : w);
+			}
+		});
+	}
+
+	/**
+	 * Scale the intensity PSF. Scale (scale==0, linear scale, do nothing)
+	 */
+	@Override
+	public void rescale(final int scale, final double max) {
+		apply(new Operation() {
+			public double apply(double v) {
+				if (scale == 0)
+					return v / max;
+				if (scale == 1)
+					return Math.log(v <= 1e-6 ? 1e-6 : v / max);
+				if (scale == 2)
+					return Math.sqrt(v <= 1e-6 ? 1e-6 : v / max);
+				if (scale == 3)
+					return 20 * Math.log10(v <= 1e-6 ? 1e-6 : v / max);
+				return v;
+			}
+		});
+	}
+
+	private void apply(Operation operation) {
+		for (int z = 0; z < nz; z++)
+			if (data[z] != null)
+				for (int k = 0; k < nxy; k++)
+					data[z][k] = operation.apply(data[z][k]);
+		operations.add(operation);
+	}
+
+	/**
+	 * Chunk of the classes of a plane to evaluate, or of its pixels to
+	 * gather if the slice is not null, split in halves down to CHUNK.
+	 */
+	private class Chunk extends RecursiveAction {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private int			z;
+		private double[]	values;
+		private double[]	slice;
+		private int			from;
+		private int			to;
+
+		public Chunk(int z, double[] values, double[] slice, int from, int to) {
+			this.z = z;
+			this.values = values;
+			this.slice = slice;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > CHUNK) {
+				int middle = (from + to) / 2;
+				invokeAll(new Chunk(z, values, slice, from, middle), new Chunk(z, values, slice, middle, to));
+			}
+			else if (slice == null)
+				evaluate(z, values, from, to);
+			else
+				map.gather(values, slice, from, to);
+		}
+	}
+
+	private static abstract class Operation {
+		abstract public double apply(double v);
+	}
+}
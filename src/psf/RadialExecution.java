@@ -0,0 +1,549 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import bilib.commons.job.runnable.Job;
+import bilib.commons.job.runnable.Pool;
+
+/**
+ * Execution of the planes of a RadialPSF on the fork/join scheduler of the
+ * run. The planes are registered in the pool of the run, which keeps them
+ * for the monitoring and the abort, and executed longest first; the planes
+ * kept from an aborted run or read from the checkpoint are stored in the
+ * volume instead, see RadialRetention and RadialCheckpoint. The planes
+ * sampled by the axial interpolation are computed by rounds, and the radii
+ * of the Bessel kernel by blocks.
+ * 
+ * The profiles are evaluated radius by radius with the Kirchhoff
+ * diffraction engine, on the workers of the run. The radii of a profile are
+ * split in chunks of CHUNK radii, which the idle workers steal. If the
+ * profile is followed outward for the cut-off, the chunks are computed by
+ * waves of one chunk per worker in a shallow run, having fewer planes than
+ * workers, and serially otherwise.
+ * 
+ * With the Gauss-Legendre quadrature, the panels of a plane are built once
+ * up to the largest radius, and shared by its chunks until the profile is
+ * complete. With the adaptive Simpson, the refinement of every radius is
+ * resumed from the states of the run, if they are kept.
+ */
+public class RadialExecution {
+
+	// Number of radii of the chunks of a profile stolen by the idle workers
+	private static final int		CHUNK		= 16;
+
+	private RadialPSF				psf;
+	private boolean					shallow		= false;
+
+	// Planes of the run registered by schedule(), null if none; the profiles
+	// reconstructed by the axial sampler, and the planes kept for the next
+	// run
+	private ArrayList<Plane>		planes;
+	private AxialSampler			sampler;
+	private RadialRetention			retention;
+	private RadialCheckpoint		checkpoint;
+
+	// Gauss-Legendre quadratures of the planes in progress, null for the
+	// other methods
+	private KirchhoffDiffraction[]	quadratures;
+
+	// States of the adaptive Simpson refinement, null if not kept
+	private IntegrationStates		states;
+
+	// Instrumentation
+	private long					evaluations	= 0;
+	private long					iterations	= 0;
+	private long					resumed		= 0;
+	private int						reused		= 0;
+	private double					asymmetry	= 0;
+
+	public RadialExecution(RadialPSF psf) {
+		this.psf = psf;
+	}
+
+	/**
+	 * Clears the counters and the quadratures of the previous run.
+	 */
+	public synchronized void rewind() {
+		quadratures = null;
+		states = null;
+		planes = null;
+		sampler = null;
+		shallow = false;
+		evaluations = 0;
+		iterations = 0;
+		resumed = 0;
+		reused = 0;
+		asymmetry = 0;
+	}
+
+	/**
+	 * Starts a run of nz planes, with the Gauss-Legendre quadrature if gauss
+	 * is set; 'states' are the states of the adaptive Simpson refinement,
+	 * null if they are not kept.
+	 */
+	public synchronized void open(int nz, boolean gauss, IntegrationStates states) {
+		this.quadratures = (gauss ? new KirchhoffDiffraction[nz] : null);
+		this.states = states;
+	}
+
+	/**
+	 * Releases the quadratures, the states and the planes of the run.
+	 */
+	public synchronized void close() {
+		quadratures = null;
+		states = null;
+		planes = null;
+		sampler = null;
+	}
+
+	/**
+	 * Registers in the pool a job for every plane to compute, the first half
+	 * only if the other is mirrored. The planes found in the retention or in
+	 * the checkpoint are stored in the volume instead. The profiles are
+	 * computed, or reconstructed by the sampler if it is not null; the
+	 * completed planes are kept in the retention and in the checkpoint.
+	 */
+	public void schedule(Pool pool, AxialSampler sampler, RadialRetention retention, RadialCheckpoint checkpoint) {
+		this.sampler = sampler;
+		this.retention = retention;
+		this.checkpoint = checkpoint;
+		ArrayList<Plane> jobs = new ArrayList<Plane>();
+		for (int z = 0; z < psf.nz; z++) {
+			if (psf.isMirrored() && psf.nz - 1 - z < z)
+				break;
+			if (reuse(z))
+				continue;
+			Plane plane = new Plane(z);
+			plane.addMonitor(psf);
+			pool.register(plane);
+			jobs.add(plane);
+		}
+		planes = jobs;
+	}
+
+	/**
+	 * True if the planes of the run have been registered by schedule().
+	 */
+	public boolean isScheduled() {
+		return planes != null;
+	}
+
+	/**
+	 * Executes the planes registered by schedule() on the scheduler of the
+	 * run, longest first, and waits for them.
+	 */
+	public void execute() {
+		Job[] jobs = new Job[planes.size()];
+		double[] costs = new double[jobs.length];
+		for (int i = 0; i < jobs.length; i++) {
+			jobs[i] = planes.get(i);
+			costs[i] = psf.getCost(planes.get(i).z);
+		}
+		execute(jobs, costs);
+	}
+
+	/**
+	 * Computes the planes requested by the axial sampler, round by round,
+	 * the planes of a round in parallel.
+	 */
+	public void sampleAxially(AxialSampler sampler) {
+		int[] z = sampler.getInitialPlanes();
+		while (z.length > 0 && psf.isRunning()) {
+			Job[] jobs = new Job[z.length];
+			double[] costs = new double[z.length];
+			for (int i = 0; i < z.length; i++) {
+				jobs[i] = new AxialPlane(z[i], sampler);
+				costs[i] = psf.getCost(z[i]);
+			}
+			execute(jobs, costs);
+			z = sampler.refine();
+		}
+	}
+
+	/**
+	 * Multiplies the Bessel kernel at the radii r, in units of [m], by the
+	 * pupils of a block of planes into their profiles h; the radii are split
+	 * in blocks of BesselKernel.BLOCK, which are processed in parallel.
+	 */
+	public void multiply(BesselKernel kernel, double[] r, double[][][] pupils, double[][] h) {
+		int blocks = (r.length + BesselKernel.BLOCK - 1) / BesselKernel.BLOCK;
+		Job[] jobs = new Job[blocks];
+		double[] costs = new double[blocks];
+		for (int b = 0; b < blocks; b++) {
+			int from = b * BesselKernel.BLOCK;
+			jobs[b] = new RadialBlock(kernel, r, from, Math.min(r.length, from + BesselKernel.BLOCK), pupils, h);
+			jobs[b].addMonitor(psf);
+			costs[b] = 1.0;
+		}
+		psf.scheduler.execute(jobs, costs);
+	}
+
+	// Executes the planes on the scheduler of the run, shallow if there are
+	// fewer planes than workers
+	private void execute(Job[] jobs, double[] costs) {
+		for (Job job : jobs)
+			job.addMonitor(psf);
+		setShallow(jobs.length < psf.scheduler.getParallelism());
+		psf.scheduler.execute(jobs, costs);
+	}
+
+	// Stores the plane z, and its mirror, if kept from an aborted run or read
+	// from the checkpoint
+	private boolean reuse(int z) {
+		int m = psf.nz - 1 - z;
+		RadialProfile profile = restore(z);
+		RadialProfile mirrored = (psf.isMirrored() ? restore(m) : profile);
+		if (profile == null || mirrored == null)
+			return false;
+		RadialData3D volume = (RadialData3D) psf.data;
+		volume.setProfile(z, profile);
+		if (psf.isMirrored())
+			volume.setProfile(m, mirrored);
+		synchronized (this) {
+			reused++;
+		}
+		return true;
+	}
+
+	// Profile of the plane z kept in memory, or read from the checkpoint and
+	// then kept in memory; null if none
+	private RadialProfile restore(int z) {
+		RadialProfile profile = retention.restore(z);
+		if (profile != null)
+			return profile;
+		profile = checkpoint.restore(z);
+		if (profile != null)
+			retention.keep(z, profile);
+		return profile;
+	}
+
+	// Keeps the profile of the completed plane z, in memory and in the
+	// checkpoint
+	private void keep(int z, RadialProfile profile) {
+		retention.keep(z, profile);
+		checkpoint.save(z, profile);
+	}
+
+	// Deviation of a plane from its mirror, relative to the maximum
+	private void verify(double[] radii, RadialProfile profile, RadialProfile mirrored) {
+		double[] a = new double[radii.length];
+		double[] b = new double[radii.length];
+		profile.getValues(radii, a);
+		mirrored.getValues(radii, b);
+		double max = 0.0;
+		double deviation = 0.0;
+		for (int c = 0; c < radii.length; c++) {
+			max = Math.max(max, Math.abs(a[c]));
+			deviation = Math.max(deviation, Math.abs(a[c] - b[c]));
+		}
+		synchronized (this) {
+			if (max > 0)
+				asymmetry = Math.max(asymmetry, deviation / max);
+		}
+	}
+
+	/**
+	 * Shallow run, the profiles followed outward for the cut-off are also
+	 * split in chunks.
+	 */
+	public void setShallow(boolean shallow) {
+		this.shallow = shallow;
+	}
+
+	/**
+	 * Profile of the plane z at the radii r, in units of [pixels]. Returns
+	 * null if the computation has been aborted.
+	 */
+	public double[] computeProfile(int z, double[] r) {
+		double[] h = new double[r.length];
+		RadialCutoff cut = psf.createCutoff(z, r);
+		boolean parallel = r.length >= 2 * CHUNK && ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool().getParallelism() > 1;
+		if (parallel && cut == null) {
+			new RadialChunk(z, r, 0, r.length, h).invoke();
+			return (psf.isRunning() ? h : null);
+		}
+		if (parallel && shallow) {
+			int wave = CHUNK * ForkJoinTask.getPool().getParallelism();
+			for (int from = 0; from < r.length; from += wave) {
+				int to = Math.min(r.length, from + wave);
+				new RadialChunk(z, r, from, to, h).invoke();
+				if (!psf.isRunning())
+					return null;
+				for (int n = from; n < to; n++)
+					if (cut.add(r[n], h[n])) {
+						psf.truncate(n + 1, h);
+						return h;
+					}
+			}
+			return h;
+		}
+		return (computeRadii(z, r, 0, r.length, h, cut) ? h : null);
+	}
+
+	// Profile of the plane z at the radii r[from] to r[to-1], written in h;
+	// false if the computation has been aborted
+	private boolean computeRadii(int z, double[] r, int from, int to, double[] h, RadialCutoff cut) {
+		KirchhoffDiffraction I = psf.createDiffraction(z);
+		if (psf.method == RadialPSF.METHOD_GAUSS)
+			I.setGaussLegendre(getQuadrature(z));
+		IntegrationStates saved = states;
+		double scale = psf.resLateral * 1E-9;
+		for (int n = from; n < to; n++) {
+			h[n] = I.calculate(r[n] * scale, getState(saved, z, r[n]));
+			if (!psf.isRunning())
+				return false;
+			if (cut != null && cut.add(r[n], h[n])) {
+				psf.truncate(n + 1, h);
+				break;
+			}
+		}
+		synchronized (this) {
+			evaluations += I.getNumberOfEvaluations();
+			iterations += I.getNumberOfIterations();
+		}
+		return true;
+	}
+
+	// State of the radius r of the plane z, null if the states are not kept
+	private IntegrationState getState(IntegrationStates saved, int z, double r) {
+		if (saved == null)
+			return null;
+		IntegrationState state = saved.get(z, r);
+		if (state != null && state.isSaved()) {
+			synchronized (this) {
+				resumed++;
+			}
+		}
+		return state;
+	}
+
+	// Gauss-Legendre quadrature of the plane z up to the largest radius,
+	// built on first use
+	private KirchhoffDiffraction getQuadrature(int z) {
+		KirchhoffDiffraction[] cache = quadratures;
+		if (cache == null || z >= cache.length) {
+			KirchhoffDiffraction quadrature = psf.createDiffraction(z);
+			quadrature.setGaussLegendre(psf.getMaximumRadius() * psf.resLateral * 1E-9);
+			return quadrature;
+		}
+		synchronized (cache) {
+			if (cache[z] == null) {
+				cache[z] = psf.createDiffraction(z);
+				cache[z].setGaussLegendre(psf.getMaximumRadius() * psf.resLateral * 1E-9);
+			}
+			return cache[z];
+		}
+	}
+
+	/**
+	 * The profile of the plane z is complete, its quadrature is released.
+	 */
+	public void release(int z) {
+		KirchhoffDiffraction[] cache = quadratures;
+		if (cache != null && z < cache.length) {
+			synchronized (cache) {
+				cache[z] = null;
+			}
+		}
+	}
+
+	public synchronized long getNumberOfEvaluations() {
+		return evaluations;
+	}
+
+	public synchronized long getNumberOfIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Number of radii whose Simpson refinement has been resumed from a
+	 * previous run.
+	 */
+	public synchronized long getNumberOfResumed() {
+		return resumed;
+	}
+
+	/**
+	 * Number of planes, with their mirror, kept from an aborted run or read
+	 * from the checkpoint, not computed.
+	 */
+	public synchronized int getNumberOfReused() {
+		return reused;
+	}
+
+	/**
+	 * Largest deviation of the verified planes from their mirror, relative
+	 * to the maximum of the plane.
+	 */
+	public synchronized double getAsymmetry() {
+		return asymmetry;
+	}
+
+	/**
+	 * Plane of the run: its radial profile, computed or reconstructed by the
+	 * axial sampler, is stored in the volume and interpolated at the radius
+	 * of every class of pixels when the plane is expanded.
+	 */
+	public class Plane extends Job {
+
+		private int	z;
+
+		public Plane(int z) {
+			this.z = z;
+		}
+
+		@Override
+		public void process() {
+			RadialProfile profile = (sampler == null ? psf.computeRadialProfile(z) : sampler.getProfile(z));
+			if (profile == null || !live)
+				return;
+			RadialData3D volume = (RadialData3D) psf.data;
+			volume.setProfile(z, profile);
+			keep(z, profile);
+			increment(90.0 / psf.nz, "" + z + " / " + psf.nz);
+
+			// Mirrored plane, the same profile
+			int m = psf.nz - 1 - z;
+			if (!psf.isMirrored() || m == z)
+				return;
+			RadialProfile mirrored = profile;
+			if (psf.isVerifyMirror()) {
+				mirrored = psf.computeRadialProfile(m);
+				if (mirrored == null || !live)
+					return;
+				verify(volume.getMap().getRadii(), profile, mirrored);
+			}
+			volume.setProfile(m, mirrored);
+			keep(m, mirrored);
+			increment(90.0 / psf.nz, "" + m + " / " + psf.nz);
+		}
+	}
+
+	/**
+	 * Plane requested by the axial sampler.
+	 */
+	public class AxialPlane extends Job {
+
+		private int				z;
+		private AxialSampler	sampler;
+
+		public AxialPlane(int z, AxialSampler sampler) {
+			this.z = z;
+			this.sampler = sampler;
+		}
+
+		@Override
+		public void process() {
+			RadialProfile profile = psf.computeRadialProfile(z);
+			if (profile != null && live)
+				sampler.setProfile(z, profile);
+		}
+	}
+
+	/**
+	 * Block of radii of the Bessel kernel, for a block of planes.
+	 */
+	public class RadialBlock extends Job {
+
+		private BesselKernel	kernel;
+		private double[]		r;
+		private int				from;
+		private int				to;
+		private double[][][]	pupils;
+		private double[][]		h;
+
+		public RadialBlock(BesselKernel kernel, double[] r, int from, int to, double[][][] pupils, double[][] h) {
+			this.kernel = kernel;
+			this.r = r;
+			this.from = from;
+			this.to = to;
+			this.pupils = pupils;
+			this.h = h;
+		}
+
+		@Override
+		public void process() {
+			if (psf.isRunning())
+				kernel.multiply(r, from, to, pupils, h);
+		}
+	}
+
+	/**
+	 * Chunk of the radii of a profile, split in halves down to CHUNK radii;
+	 * the halves are stolen by the idle workers of the fork/join scheduler.
+	 */
+	public class RadialChunk extends RecursiveAction {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private int			z;
+		private double[]	r;
+		private int			from;
+		private int			to;
+		private double[]	h;
+
+		public RadialChunk(int z, double[] r, int from, int to, double[] h) {
+			this.z = z;
+			this.r = r;
+			this.from = from;
+			this.to = to;
+			this.h = h;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= CHUNK || !psf.isRunning()) {
+				computeRadii(z, r, from, to, h, null);
+				return;
+			}
+			int middle = (from + to) / 2;
+			invokeAll(new RadialChunk(z, r, from, middle, h), new RadialChunk(z, r, middle, to, h));
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+import java.util.Arrays;
+
+/**
+ * Map of the pixels of a lateral plane to their distance to the center,
+ * shared by all the planes of a run.
+ * 
+ * The pixels at the same distance of the center, the 8 pixels of the octant
+ * symmetry and the other coincidences, share a class. The squared distance
+ * in units of half pixels, (2x - nx + 1)^2 + (2y - ny + 1)^2, is an integer
+ * which identifies the class exactly. The classes are sorted by increasing
+ * radius; the profile is evaluated once per class and the plane is filled
+ * by a gather.
+ * 
+ * The classes are found on one octant of the plane, one quadrant if the
+ * plane is not square, by sorting the distinct squared distances; the
+ * classes of the other pixels are mirrored. The memory is proportional to
+ * the number of pixels, not to the squared size of the plane.
+ * 
+ * The map is built by RadialPSF.createData() and used by RadialData3D to
+ * expand the profiles of the planes.
+ */
+public class RadialMap {
+
+	private int			nx;
+	private int			ny;
+
+	// Class of every pixel, x + nx * y
+	private int[]		index;
+
+	// Radius of every class in units of [pixels], increasing
+	private double[]	radii;
+
+	// Number of pixels of every class, and first pixel of every class
+	private int[]		counts;
+	private int[]		first;
+
+	public RadialMap(int nx, int ny) {
+		this.nx = nx;
+		this.ny = ny;
+		// Quadrant of hx x hy pixels, i and j being the distances to the center
+		// in pixels, rounded down; the octant j >= i if the plane is square
+		int hx = (nx + 1) / 2;
+		int hy = (ny + 1) / 2;
+		boolean octant = (nx == ny);
+		int n = 0;
+		long[] squared = new long[octant ? hx * (hx + 1) / 2 : hx * hy];
+		for (int j = 0; j < hy; j++)
+			for (int i = 0; i < (octant ? j + 1 : hx); i++)
+				squared[n++] = getSquaredDistance(i, j);
+
+		// Distinct squared distances, increasing
+		Arrays.sort(squared);
+		int count = 0;
+		for (int k = 0; k < n; k++)
+			if (k == 0 || squared[k] != squared[count - 1])
+				squared[count++] = squared[k];
+		radii = new double[count];
+		for (int c = 0; c < count; c++)
+			radii[c] = 0.5 * Math.sqrt(squared[c]);
+
+		// Classes of the quadrant, the other half of the octant mirrored
+		int[] quadrant = new int[hx * hy];
+		for (int j = 0; j < hy; j++)
+			for (int i = 0; i < (octant ? j + 1 : hx); i++) {
+				int c = Arrays.binarySearch(squared, 0, count, getSquaredDistance(i, j));
+				quadrant[i + hx * j] = c;
+				if (octant)
+					quadrant[j + hx * i] = c;
+			}
+		index = new int[nx * ny];
+		for (int y = 0; y < ny; y++) {
+			int j = Math.abs(2 * y - ny + 1) / 2;
+			for (int x = 0; x < nx; x++)
+				index[x + nx * y] = quadrant[Math.abs(2 * x - nx + 1) / 2 + hx * j];
+		}
+		counts = new int[count];
+		first = new int[count];
+		for (int k = index.length - 1; k >= 0; k--) {
+			counts[index[k]]++;
+			first[index[k]] = k;
+		}
+	}
+
+	public int getWidth() {
+		return nx;
+	}
+
+	public int getHeight() {
+		return ny;
+	}
+
+	/**
+	 * Radii of the classes in units of [pixels], increasing.
+	 */
+	public double[] getRadii() {
+		return radii;
+	}
+
+	public int getNumberOfClasses() {
+		return radii.length;
+	}
+
+	/**
+	 * Class of the pixel k = x + nx * y.
+	 */
+	public int getClassOf(int k) {
+		return index[k];
+	}
+
+	/**
+	 * Number of pixels of every class.
+	 */
+	public int[] getCounts() {
+		return counts;
+	}
+
+	/**
+	 * Lowest pixel index x + nx * y of every class.
+	 */
+	public int[] getFirstPixels() {
+		return first;
+	}
+
+	/**
+	 * Plane of the profile: one evaluation per class, then a gather.
+	 */
+	public double[] fill(RadialProfile profile) {
+		double[] values = new double[radii.length];
+		profile.getValues(radii, values);
+		return gather(values);
+	}
+
+	/**
+	 * Plane of the values of the classes.
+	 */
+	public double[] gather(double[] values) {
+		double[] slice = new double[nx * ny];
+		gather(values, slice, 0, slice.length);
+		return slice;
+	}
+
+	/**
+	 * Pixels 'from' to 'to'-1 of the plane of the values of the classes.
+	 */
+	public void gather(double[] values, double[] slice, int from, int to) {
+		for (int k = from; k < to; k++)
+			slice[k] = values[index[k]];
+	}
+
+	// Squared distance in units of half pixels of the pixel (i, j) of the
+	// quadrant
+	private long getSquaredDistance(int i, int j) {
+		long dx = 2 * i + 1 - nx % 2;
+		long dy = 2 * j + 1 - ny % 2;
+		return dx * dx + dy * dy;
+	}
+}
@@ -0,0 +1,687 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+package psf;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import bilib.commons.job.runnable.Pool;
+
+/**
+ * Base class of the optical models having a radial symmetry in the lateral
+ * plane (Gibson & Lanni, Born & Wolf, Richards & Wolf, Torok & Varga,
+ * Variable Refractive Index Gibson & Lanni). Every plane is computed by
+ * evaluating the radial profile h(r) with the shared Kirchhoff diffraction
+ * engine; the volume, a RadialData3D, stores the profiles and interpolates
+ * h(r) at every pixel when a plane is expanded.
+ * 
+ * The planes are scheduled on the workers of the run by RadialExecution,
+ * which also evaluates the profiles radius by radius. With the linear
+ * interpolation, they sample it on an adaptive grid, see ProfileSampler:
+ * the intervals are bisected where the interpolation error, estimated from
+ * the local curvature of the profile, exceeds a tolerance relative to the
+ * maximum of the plane. The methods which compute all the
+ * radii at once (Bessel kernel, Hankel transform) use the uniform grid of
+ * getRadii(). The cubic spline and Chebyshev interpolations use the grid of
+ * getRadii() with the density of getSamplesPerPixel(), see RadialCalibration.
+ * 
+ * An abort cancels the quadratures in progress. The planes completed before
+ * the abort stay in the volume, a partial stack, and are reused by the next
+ * run having the same parameters and accuracy, see RadialRetention.
+ * 
+ * If a checkpoint directory is set, the profile of every completed plane is
+ * also written on disk, see RadialCheckpoint; a restarted run reads the planes of
+ * the checkpoint of its parameters instead of computing them. The checkpoint
+ * is deleted when the run completes.
+ * 
+ * A run prints a summary line; the details of the methods are printed if
+ * verbose is set.
+ */
+abstract public class RadialPSF extends PSF {
+
+	// Methods of evaluation of the radial profiles
+	public static final int	METHOD_SIMPSON	= 0;
+	public static final int	METHOD_KERNEL	= 1;
+	public static final int	METHOD_GAUSS	= 2;
+	public static final int	METHOD_HANKEL	= 3;
+
+	// Relative tolerance of the interpolation on the adaptive radial grid
+	// for every accuracy
+	private static final double[]	PROFILE_TOL	= new double[] { 1E-2, 3E-3, 1E-3 };
+
+	// Suggested threshold of the radial cut-off, relative to the maximum of
+	// the plane, below the quantization step of 16 bits; the cut-off is off
+	// by default. Margin window in periods of the intensity of the Bessel
+	// kernel
+	public static final double		CUTOFF		= 1E-5;
+	private static final double		MARGIN		= 4.0;
+
+	// Initial axial step of the axial interpolation, in units of
+	// lambda / NA^2: a quarter of the Born & Wolf axial unit in a medium of
+	// index 1
+	private static final double		AXIAL_STEP	= 0.25;
+
+	// Samples per pixel of the cubic spline and Chebyshev interpolations for
+	// every accuracy: the smallest densities which meet PROFILE_TOL for all
+	// the models, as reported by RadialCalibration. The linear interpolation
+	// uses getOverSampling().
+	private static final double[][]	DENSITY		= new double[][] { null, { 1.5, 2.0, 3.0 }, { 2.0, 3.0, 4.0 } };
+
+	protected int			accuracy		= 0;
+	protected int			method			= METHOD_SIMPSON;
+	protected int			interpolation	= RadialProfile.INTERPOLATION_LINEAR;
+
+	// Axial symmetry: the planes of the second half are mirrored from the
+	// first half, or computed and compared to the mirror if verify is set
+	private boolean			mirror			= true;
+	private boolean			verify			= false;
+
+	// Filon-type quadrature of the oscillatory cases of the adaptive Simpson
+	private boolean			filon			= true;
+
+	// Threshold of the radial cut-off, 0 to compute the whole profile
+	private double			cutoff			= 0;
+
+	// Axial interpolation: the planes are sampled adaptively, the others are
+	// reconstructed from their profiles
+	private boolean			axial			= false;
+	private AxialSampler	sampler;
+
+	// Fork/join execution of the planes of the run on the scheduler of the
+	// run, longest first; the profiles evaluated radius by radius, and their
+	// adaptive grid
+	private RadialExecution		execution		= new RadialExecution(this);
+	private ProfileSampler		profileSampler	= new ProfileSampler(this);
+
+	// States of the adaptive Simpson refinement kept for a run at a higher
+	// accuracy, if enabled
+	private boolean				resume			= false;
+	private IntegrationStates	states			= new IntegrationStates();
+
+	// Cancellation of the quadratures in progress, raised by abort()
+	private final AtomicBoolean	cancelled		= new AtomicBoolean(false);
+
+	// Planes kept from an aborted run, and checkpoint of the run
+	private RadialRetention		retention		= new RadialRetention();
+	private RadialCheckpoint	checkpoint		= new RadialCheckpoint();
+
+	// Instrumentation of the methods which compute all the radii at once
+	private long				evaluations		= 0;
+	private long				iterations		= 0;
+	private long				skipped			= 0;
+
+	// Report of the details of the run
+	private boolean				verbose			= false;
+
+	// Radial profiles of all the planes, computed by the Bessel kernel
+	private double[][]		profiles;
+
+	// Quasi-fast Hankel transform of the run, null for the other methods
+	private HankelTransform	hankel;
+
+	/**
+	 * Returns the integrand of the Kirchhoff diffraction integral for the
+	 * plane z.
+	 */
+	abstract public DiffractionIntegrand createIntegrand(int z);
+
+	/**
+	 * True if the intensity of the model is symmetric under defocus ->
+	 * -defocus, the plane z being the mirror of the plane nz-1-z.
+	 */
+	public boolean isAxiallySymmetric() {
+		return false;
+	}
+
+	/**
+	 * Uses the axial symmetry of the model, if any, to compute only the first
+	 * half of the planes.
+	 */
+	public void setMirror(boolean mirror) {
+		this.mirror = mirror;
+	}
+
+	/**
+	 * Verification of the axial symmetry: the mirrored planes are computed
+	 * too, and the largest deviation from their mirror is reported.
+	 */
+	public void setVerifyMirror(boolean verify) {
+		this.verify = verify;
+	}
+
+	public boolean isMirror() {
+		return mirror;
+	}
+
+	public boolean isVerifyMirror() {
+		return verify;
+	}
+
+	/**
+	 * Replaces the adaptive Simpson by the Filon-type quadrature where the
+	 * integrand oscillates strongly, see KirchhoffDiffraction. Enabled by
+	 * default.
+	 */
+	public void setFilon(boolean filon) {
+		this.filon = filon;
+	}
+
+	public boolean isFilon() {
+		return filon;
+	}
+
+	/**
+	 * Threshold, relative to the maximum of the plane, under which the tail of
+	 * the profile is not computed but set to zero; 0, the default, to compute
+	 * the whole profile.
+	 */
+	public void setCutoff(double cutoff) {
+		this.cutoff = cutoff;
+	}
+
+	public double getCutoff() {
+		return cutoff;
+	}
+
+	/**
+	 * Computes a subset of the planes, chosen adaptively, and reconstructs
+	 * the others by interpolation in the radial domain. Not used with the
+	 * Bessel kernel, which computes all the planes at once.
+	 */
+	public void setAxialInterpolation(boolean axial) {
+		this.axial = axial;
+	}
+
+	public boolean isAxialInterpolation() {
+		return axial;
+	}
+
+	/**
+	 * Keeps the state of the adaptive Simpson refinement of the radii after
+	 * the run, so that the next run with the same parameters at a higher
+	 * accuracy resumes the refinement instead of restarting it. Disabled by
+	 * default; the states are released when disabled.
+	 */
+	public void setResumeIntegration(boolean resume) {
+		this.resume = resume;
+		if (!resume)
+			resetIntegrationStates();
+	}
+
+	public boolean isResumeIntegration() {
+		return resume;
+	}
+
+	/**
+	 * Releases the integration states kept for an accuracy upgrade.
+	 */
+	public void resetIntegrationStates() {
+		states.reset();
+	}
+
+	/**
+	 * Prints the details of the methods at the end of a run, instead of the
+	 * summary line only.
+	 */
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	public boolean isVerbose() {
+		return verbose;
+	}
+
+	@Override
+	public String getParameterKey() {
+		return super.getParameterKey() + " method=" + method + " interpolation=" + interpolation;
+	}
+
+	public double getAsymmetry() {
+		return execution.getAsymmetry();
+	}
+
+	/**
+	 * True if the planes of the second half are mirrored from the first
+	 * half in this run.
+	 */
+	boolean isMirrored() {
+		return mirror && isAxiallySymmetric();
+	}
+
+	/**
+	 * Number of radial samples per pixel.
+	 */
+	public int getOverSampling() {
+		return 2;
+	}
+
+	/**
+	 * Names of the methods of evaluation, in the order of the METHOD_*
+	 * constants.
+	 */
+	public String[] getMethods() {
+		return new String[] { "Adaptive Simpson", "Bessel kernel", "Gauss-Legendre", "Hankel transform" };
+	}
+
+	/**
+	 * Number of radial samples per pixel of the interpolation kernel at the
+	 * current accuracy.
+	 */
+	public double getSamplesPerPixel() {
+		if (interpolation == RadialProfile.INTERPOLATION_LINEAR)
+			return getOverSampling();
+		return DENSITY[interpolation][Math.max(0, Math.min(2, accuracy))];
+	}
+
+	/**
+	 * Relative tolerance of the radial interpolation for a given accuracy.
+	 */
+	public static double getTolerance(int accuracy) {
+		return PROFILE_TOL[Math.max(0, Math.min(PROFILE_TOL.length - 1, accuracy))];
+	}
+
+	/**
+	 * Largest radius of the profile in units of [pixels], beyond the farthest
+	 * pixel.
+	 */
+	public double getMaximumRadius() {
+		double x0 = (nx - 1) / 2.0;
+		double y0 = (ny - 1) / 2.0;
+		int maxRadius = ((int) Math.round(Math.sqrt((nx - x0) * (nx - x0) + (ny - y0) * (ny - y0)))) + 1;
+		return maxRadius - 1.0 / getOverSampling();
+	}
+
+	/**
+	 * Radial locations of the profile in units of [pixels].
+	 */
+	public double[] getRadii() {
+		double rEnd = getMaximumRadius();
+		if (interpolation == RadialProfile.INTERPOLATION_CUBIC)
+			return RadialProfile.getUniformRadii(rEnd, getSamplesPerPixel());
+		if (interpolation == RadialProfile.INTERPOLATION_CHEBYSHEV)
+			return RadialProfile.getChebyshevRadii(rEnd, getSamplesPerPixel());
+		double[] r = new double[(int) Math.round(rEnd * getOverSampling()) + 1];
+		for (int n = 0; n < r.length; n++)
+			r[n] = ((double) n) / ((double) getOverSampling());
+		return r;
+	}
+
+	@Override
+	public void process() {
+		evaluations = 0;
+		iterations = 0;
+		skipped = 0;
+		profiles = null;
+		hankel = null;
+		sampler = null;
+		execution.rewind();
+		profileSampler.reset();
+		checkpoint.rewind();
+		cancelled.set(false);
+		super.process();
+		profiles = null;
+		execution.close();
+
+		// Summary, and the warnings
+		String name = getShortname() + ": ";
+		File directory = checkpoint.getDirectory();
+		if (live)
+			print(name + getNumberOfEvaluations() + " integrand evaluations, " + getNumberOfIterations() + " iterations");
+		if (checkpoint.getNumberOfUnsaved() > 0)
+			print(name + checkpoint.getNumberOfUnsaved() + " planes not written to the checkpoint " + directory);
+		if (live) {
+			retention.reset();
+			checkpoint.close();
+		}
+		else if (retention.size() > 0)
+			print(name + retention.size() + " / " + nz + " planes completed, kept for the next run");
+
+		// Details of the methods
+		if (live && verbose) {
+			if (isAdaptive() && profileSampler.getSamplesPerPlane() > 0)
+				print(name + profileSampler.getSamplesPerPlane() + " radial samples per plane");
+			if (checkpoint.getNumberOfRestored() > 0)
+				print(name + checkpoint.getNumberOfRestored() + " planes read from the checkpoint " + directory);
+			if (execution.getNumberOfReused() > 0)
+				print(name + execution.getNumberOfReused() + " planes kept from an aborted run, not computed");
+			if (execution.getNumberOfResumed() > 0)
+				print(name + execution.getNumberOfResumed() + " radii resumed from the previous run");
+			if (skipped > 0)
+				print(name + skipped + " radial samples past the cut-off");
+			if (isMirrored())
+				print(name + (verify ? "mirror verified, largest relative deviation " + execution.getAsymmetry() : (nz / 2) + " planes mirrored"));
+			if (sampler != null)
+				print(name + sampler.getNumberOfComputedPlanes() + " planes computed, the others interpolated");
+			if (hankel != null)
+				print(name + "Hankel transform of " + hankel.getNumberOfSamples() + " samples, FFT of " + hankel.getLength());
+		}
+		sampler = null;
+		hankel = null;
+	}
+
+	@Override
+	public void abort() {
+		cancelled.set(true);
+		super.abort();
+	}
+
+	/**
+	 * Number of planes of the volume which have been computed, all of them
+	 * unless the run has been aborted.
+	 */
+	public int getNumberOfCompletedPlanes() {
+		if (!(data instanceof RadialData3D))
+			return 0;
+		RadialData3D volume = (RadialData3D) data;
+		int count = 0;
+		for (int z = 0; z < volume.nz; z++)
+			if (volume.getProfile(z) != null)
+				count++;
+		return count;
+	}
+
+	/**
+	 * Releases the planes kept from an aborted run; the checkpoint on disk,
+	 * if any, is kept.
+	 */
+	@Override
+	public void resetCompletedPlanes() {
+		retention.reset();
+	}
+
+	// Parameters of the planes kept from an aborted run
+	private String getRetentionKey() {
+		return getParameterKey() + " accuracy=" + accuracy + " cutoff=" + cutoff + " axial=" + axial + " mirror=" + isMirrored() + " filon=" + filon;
+	}
+
+	/**
+	 * The volume stores the radial profiles of the planes, expanded on
+	 * demand, in parallel on the workers of the run if there are fewer
+	 * planes than workers.
+	 */
+	@Override
+	protected Data3D createData() {
+		RadialData3D volume = new RadialData3D(new RadialMap(nx, ny), nz);
+		if (nz < scheduler.getParallelism())
+			volume.setScheduler(scheduler);
+		return volume;
+	}
+
+	@Override
+	public void generate(Pool pool) {
+		if (method == METHOD_SIMPSON && resume)
+			states.open(getParameterKey(), nz);
+		execution.open(nz, method == METHOD_GAUSS, (method == METHOD_SIMPSON && resume ? states : null));
+		if (method == METHOD_KERNEL) {
+			computeProfiles();
+			if (profiles == null)
+				return;
+		}
+		if (method == METHOD_HANKEL) {
+			DiffractionIntegrand[] integrands = new DiffractionIntegrand[nz];
+			for (int z = 0; z < nz; z++)
+				integrands[z] = createIntegrand(z);
+			hankel = new HankelTransform(integrands, getRadiiInMeters(), accuracy);
+		}
+		if (axial && method != METHOD_KERNEL) {
+			sampleAxially();
+			if (!live)
+				return;
+		}
+		String key = getRetentionKey();
+		retention.open(key);
+		checkpoint.open(key, checkpointDirectory);
+		execution.schedule(pool, sampler, retention, checkpoint);
+	}
+
+	/**
+	 * The planes are executed by the fork/join scheduler, longest first; the
+	 * pool keeps them for the monitoring and the abort.
+	 */
+	@Override
+	protected void execute(Pool pool) {
+		if (!execution.isScheduled()) {
+			super.execute(pool);
+			return;
+		}
+		execution.execute();
+	}
+
+	/**
+	 * Estimate of the cost of the plane z: the number of oscillations of the
+	 * integrand up to the largest radius, which drives the refinement of the
+	 * adaptive Simpson. The profiles computed at once cost the same.
+	 */
+	public double getCost(int z) {
+		if (profiles != null || hankel != null)
+			return 1.0;
+		return 1.0 + createIntegrand(z).getNumberOfPeriods(getMaximumRadius() * resLateral * 1E-9);
+	}
+
+	/**
+	 * True if the radial profiles are sampled on an adaptive grid, false if
+	 * they are computed on the uniform grid of getRadii().
+	 */
+	public boolean isAdaptive() {
+		if (interpolation != RadialProfile.INTERPOLATION_LINEAR)
+			return false;
+		return method != METHOD_KERNEL && method != METHOD_HANKEL;
+	}
+
+	public synchronized long getNumberOfEvaluations() {
+		return evaluations + execution.getNumberOfEvaluations();
+	}
+
+	public synchronized long getNumberOfIterations() {
+		return iterations + execution.getNumberOfIterations();
+	}
+
+	/**
+	 * True while the run is neither aborted nor cancelled.
+	 */
+	boolean isRunning() {
+		return live && !cancelled.get();
+	}
+
+	private synchronized void account(HankelTransform transform) {
+		evaluations += transform.getNumberOfSamples();
+		iterations++;
+	}
+
+	// Radial locations of the profile in units of [m]
+	private double[] getRadiiInMeters() {
+		double[] r = getRadii();
+		for (int n = 0; n < r.length; n++)
+			r[n] = r[n] * resLateral * 1E-9;
+		return r;
+	}
+
+	/**
+	 * Radial profile of the plane z at the radii r, in units of [pixels].
+	 * Returns null if the computation has been aborted.
+	 */
+	public double[] computeProfile(int z, double[] r) {
+		if (profiles != null)
+			return profiles[z];
+		if (hankel != null) {
+			double[] rMeters = new double[r.length];
+			for (int n = 0; n < r.length; n++)
+				rMeters[n] = r[n] * resLateral * 1E-9;
+			double[] h = hankel.getProfile(createIntegrand(z), rMeters);
+			account(hankel);
+			return h;
+		}
+
+		return execution.computeProfile(z, r);
+	}
+
+	/**
+	 * Kirchhoff diffraction engine of the plane z, cancelled by abort().
+	 */
+	public KirchhoffDiffraction createDiffraction(int z) {
+		KirchhoffDiffraction I = new KirchhoffDiffraction(createIntegrand(z), accuracy);
+		if (!filon)
+			I.setFilon(false);
+		I.setCancellation(cancelled);
+		return I;
+	}
+
+	/**
+	 * Cut-off of the profile of the plane z computed outward on the grid r,
+	 * in units of [pixels]; null if the truncation is disabled or if the grid
+	 * does not start at the center (the middles of the adaptive refinement).
+	 */
+	public RadialCutoff createCutoff(int z, double[] r) {
+		if (cutoff <= 0 || r.length == 0 || r[0] != 0.0)
+			return null;
+		DiffractionIntegrand integrand = createIntegrand(z);
+		double sMax = integrand.getBesselScale(integrand.getUpperLimit());
+		double period = Math.PI / (sMax * resLateral * 1E-9);
+		return new RadialCutoff(cutoff, Math.max(2.0, MARGIN * period));
+	}
+
+	/**
+	 * Sets to zero the tail of the profile h from the index n.
+	 */
+	public void truncate(int n, double[] h) {
+		for (int i = n; i < h.length; i++)
+			h[i] = 0.0;
+		synchronized (this) {
+			skipped += h.length - n;
+		}
+	}
+
+	/**
+	 * Radial profile of the plane z, on the adaptive grid or on the uniform
+	 * grid depending on the method. Returns null if the computation has been
+	 * aborted.
+	 */
+	public RadialProfile computeRadialProfile(int z) {
+		RadialProfile profile = sampleProfile(z);
+		execution.release(z);
+		return profile;
+	}
+
+	// Radial profile of the plane z, null if aborted
+	private RadialProfile sampleProfile(int z) {
+		double[] uniform = getRadii();
+		if (!isAdaptive()) {
+			double[] h = computeProfile(z, uniform);
+			return (h == null ? null : new RadialProfile(uniform, h, interpolation));
+		}
+
+		// Initial grid: half a period of the intensity of the Bessel kernel,
+		// coarse enough for the tail, fine enough not to miss a ring
+		double rEnd = uniform[uniform.length - 1];
+		DiffractionIntegrand integrand = createIntegrand(z);
+		double sMax = integrand.getBesselScale(integrand.getUpperLimit());
+		double step = Math.max(0.25, Math.min(4.0, 0.5 * Math.PI / (sMax * resLateral * 1E-9)));
+		return profileSampler.sample(z, rEnd, step, getTolerance(accuracy));
+	}
+
+	/**
+	 * Computes the radial profiles of all the planes with the Bessel kernel.
+	 * The kernel is built once for the run; the planes are processed by
+	 * blocks, which bound the memory of the pupils, and the radii are split
+	 * in blocks which are processed in parallel.
+	 */
+	private void computeProfiles() {
+		double[] r = getRadii();
+		double[] rMeters = getRadiiInMeters();
+
+		// First half of the planes only if the others are mirrored
+		int count = (isMirrored() && !verify ? (nz + 1) / 2 : nz);
+		DiffractionIntegrand[] integrands = new DiffractionIntegrand[count];
+		for (int z = 0; z < count; z++)
+			integrands[z] = createIntegrand(z);
+		double required = BesselKernel.getRequiredIntervals(integrands, rMeters[r.length - 1], accuracy);
+		int N = BesselKernel.getNumberOfIntervals(integrands, rMeters[r.length - 1], accuracy);
+		if (required > N)
+			print(getShortname() + ": Bessel kernel limited to " + N + " intervals, " + (long) required + " required; the far planes are under-sampled");
+		BesselKernel kernel = new BesselKernel(integrands[0], N);
+
+		double[][] h = new double[count][r.length];
+		int depth = kernel.getPlanesPerBlock();
+		int rounds = 0;
+		for (int z0 = 0; z0 < count && live; z0 += depth) {
+			int z1 = Math.min(count, z0 + depth);
+			double[][][] pupils = new double[z1 - z0][][];
+			for (int z = z0; z < z1; z++)
+				pupils[z - z0] = kernel.getPupil(integrands[z]);
+			double[][] hb = new double[z1 - z0][];
+			for (int z = z0; z < z1; z++)
+				hb[z - z0] = h[z];
+			execution.multiply(kernel, rMeters, pupils, hb);
+			rounds++;
+		}
+
+		// Kernel evaluations of every block of planes, and pupil evaluations
+		// of every plane
+		evaluations += (long) kernel.getNumberOfNodes() * (rounds * r.length + count);
+		if (live && verbose)
+			print(getShortname() + ": Bessel kernel of " + r.length + " radii x " + kernel.getNumberOfNodes() + " nodes");
+		if (live)
+			profiles = h;
+	}
+
+	/**
+	 * Creates the axial sampler of the run and computes its planes, see
+	 * RadialExecution.sampleAxially(). Only the first half is sampled if the
+	 * other is mirrored.
+	 */
+	private void sampleAxially() {
+		int count = (isMirrored() ? (nz - 1) / 2 + 1 : nz);
+		int stride = (int) Math.floor(AXIAL_STEP * lambda / (NA * NA * resAxial * 1E-9));
+		// The reconstructed profiles use the cubic spline on its calibrated
+		// grid if the computed ones are linear on an adaptive grid
+		double[] radii = getRadii();
+		int kernel = interpolation;
+		if (interpolation == RadialProfile.INTERPOLATION_LINEAR) {
+			kernel = RadialProfile.INTERPOLATION_CUBIC;
+			radii = RadialProfile.getUniformRadii(getMaximumRadius(), DENSITY[kernel][Math.max(0, Math.min(2, accuracy))]);
+		}
+		sampler = new AxialSampler(count, stride, radii, kernel, getTolerance(accuracy));
+		execution.sampleAxially(sampler);
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+/**
+ * Radial profile h(r) of a plane sampled on a grid of increasing radii, in
+ * units of [pixels], which need not be uniform. The profile is reconstructed
+ * between the samples with one of the interpolation kernels:
+ * 
+ * - linear, on any grid;
+ * - cubic spline, on any grid;
+ * - piecewise Chebyshev, on a grid of uniform panels made of the
+ * Chebyshev-Lobatto nodes of a polynomial of degree CHEBYSHEV_DEGREE, see
+ * getChebyshevRadii(). The ends of the panels are shared.
+ * 
+ * The interval of a radius is found through a table of the first sample of
+ * every pixel.
+ */
+public class RadialProfile {
+
+	// Interpolation kernels
+	public static final int		INTERPOLATION_LINEAR	= 0;
+	public static final int		INTERPOLATION_CUBIC		= 1;
+	public static final int		INTERPOLATION_CHEBYSHEV	= 2;
+
+	// Degree of the polynomial of a Chebyshev panel
+	public static final int		CHEBYSHEV_DEGREE		= 4;
+
+	private double[]			r;
+	private double[]			h;
+	private int					interpolation;
+
+	// first[k] is the last sample whose radius is lower than or equal to k
+	private int[]				first;
+
+	// Second derivatives of the cubic spline
+	private double[]			d2;
+
+	// Width of the Chebyshev panels and barycentric weights of the nodes
+	private double				width;
+	private double[]			barycentric;
+
+	public RadialProfile(double[] r, double[] h) {
+		this(r, h, INTERPOLATION_LINEAR);
+	}
+
+	public RadialProfile(double[] r, double[] h, int interpolation) {
+		this.r = r;
+		this.h = h;
+		this.interpolation = interpolation;
+		int n = (int) Math.floor(r[r.length - 1]) + 1;
+		first = new int[n];
+		int i = 0;
+		for (int k = 0; k < n; k++) {
+			while (i < r.length - 2 && r[i + 1] <= k)
+				i++;
+			first[k] = i;
+		}
+		if (interpolation == INTERPOLATION_CUBIC)
+			computeSpline();
+		if (interpolation == INTERPOLATION_CHEBYSHEV) {
+			width = r[CHEBYSHEV_DEGREE] - r[0];
+			barycentric = new double[CHEBYSHEV_DEGREE + 1];
+			for (int k = 0; k <= CHEBYSHEV_DEGREE; k++)
+				barycentric[k] = (k % 2 == 0 ? 1.0 : -1.0) * (k == 0 || k == CHEBYSHEV_DEGREE ? 0.5 : 1.0);
+		}
+	}
+
+	/**
+	 * Names of the interpolation kernels, in the order of the INTERPOLATION_*
+	 * constants.
+	 */
+	public static String[] getInterpolations() {
+		return new String[] { "Linear", "Cubic spline", "Chebyshev" };
+	}
+
+	/**
+	 * Radii of a grid of Chebyshev panels covering [0, rEnd] with on average
+	 * 'density' samples per pixel.
+	 */
+	public static double[] getChebyshevRadii(double rEnd, double density) {
+		double width = CHEBYSHEV_DEGREE / density;
+		int panels = Math.max(1, (int) Math.ceil(rEnd / width));
+		double[] r = new double[panels * CHEBYSHEV_DEGREE + 1];
+		for (int p = 0; p < panels; p++)
+			for (int k = 0; k < CHEBYSHEV_DEGREE; k++)
+				r[p * CHEBYSHEV_DEGREE + k] = width * (p + 0.5 * (1.0 - Math.cos(Math.PI * k / CHEBYSHEV_DEGREE)));
+		r[r.length - 1] = panels * width;
+		return r;
+	}
+
+	/**
+	 * Radii of a uniform grid covering [0, rEnd] with 'density' samples per
+	 * pixel.
+	 */
+	public static double[] getUniformRadii(double rEnd, double density) {
+		int n = Math.max(1, (int) Math.ceil(rEnd * density));
+		double[] r = new double[n + 1];
+		for (int i = 0; i <= n; i++)
+			r[i] = i / density;
+		return r;
+	}
+	public int getNumberOfSamples() {
+		return r.length;
+	}
+
+	public double[] getRadii() {
+		return r;
+	}
+
+	public double[] getValues() {
+		return h;
+	}
+
+	public int getInterpolation() {
+		return interpolation;
+	}
+
+	/**
+	 * Index of the interval [r[i], r[i+1]] containing the radius.
+	 */
+	public int getInterval(double radius) {
+		int k = Math.max(0, Math.min(first.length - 1, (int) radius));
+		int i = first[k];
+		while (i < r.length - 2 && r[i + 1] < radius)
+			i++;
+		return i;
+	}
+
+	/**
+	 * Value of the profile at the radius, in units of [pixels].
+	 */
+	public double getValue(double radius) {
+		if (interpolation == INTERPOLATION_CHEBYSHEV)
+			return getChebyshevValue(radius);
+		int i = getInterval(radius);
+		double d = r[i + 1] - r[i];
+		double t = (radius - r[i]) / d;
+		double value = h[i] + (h[i + 1] - h[i]) * t;
+		if (interpolation == INTERPOLATION_CUBIC)
+			value -= d * d * t * (1.0 - t) * ((2.0 - t) * d2[i] + (1.0 + t) * d2[i + 1]) / 6.0;
+		return value;
+	}
+
+	/**
+	 * Values of the profile at increasing radii, written in values.
+	 */
+	public void getValues(double[] radii, double[] values) {
+		for (int n = 0; n < radii.length; n++)
+			values[n] = getValue(radii[n]);
+	}
+
+	// Barycentric interpolation in the Chebyshev panel of the radius
+	private double getChebyshevValue(double radius) {
+		int panels = (r.length - 1) / CHEBYSHEV_DEGREE;
+		int p = Math.max(0, Math.min(panels - 1, (int) (radius / width)));
+		int base = p * CHEBYSHEV_DEGREE;
+		double num = 0.0;
+		double den = 0.0;
+		for (int k = 0; k <= CHEBYSHEV_DEGREE; k++) {
+			double diff = radius - r[base + k];
+			if (diff == 0.0)
+				return h[base + k];
+			double w = barycentric[k] / diff;
+			num += w * h[base + k];
+			den += w;
+		}
+		return num / den;
+	}
+
+	// Cubic spline, tridiagonal system of the second derivatives. The profile
+	// is even, h'(0) = 0; the spline is natural at the last radius.
+	private void computeSpline() {
+		int n = r.length;
+		d2 = new double[n];
+		if (n < 3)
+			return;
+		double[] c = new double[n];
+		double b0 = r[1] - r[0];
+		c[0] = 0.5;
+		d2[0] = 3.0 * (h[1] - h[0]) / (b0 * b0);
+		for (int i = 1; i < n - 1; i++) {
+			double a = r[i] - r[i - 1];
+			double b = r[i + 1] - r[i];
+			double rhs = 6.0 * ((h[i + 1] - h[i]) / b - (h[i] - h[i - 1]) / a);
+			double m = 2.0 * (a + b) - a * c[i - 1];
+			c[i] = b / m;
+			d2[i] = (rhs - a * d2[i - 1]) / m;
+		}
+		for (int i = n - 2; i >= 0; i--)
+			d2[i] -= c[i] * d2[i + 1];
+	}
+}
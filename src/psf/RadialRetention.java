@@ -0,0 +1,109 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Planes of a radially symmetric model completed by an aborted run. Their
+ * profiles are kept in memory for the next run having the same parameters
+ * and accuracy; the checkpoint on disk is handled by RadialCheckpoint. At
+ * most MAX_RETAINED radial samples are kept, about 128 MB; the other planes
+ * are only in the checkpoint, if any.
+ */
+public class RadialRetention {
+
+	private static final int							MAX_RETAINED	= 1 << 23;
+
+	// Parameters of the kept planes, null if none
+	private String										key;
+	private ConcurrentHashMap<Integer, RadialProfile>	retained		= new ConcurrentHashMap<Integer, RadialProfile>();
+	private long										samples			= 0;
+
+	/**
+	 * Starts a run having the parameters 'key'; the planes kept for other
+	 * parameters are released.
+	 */
+	public synchronized void open(String key) {
+		if (!key.equals(this.key)) {
+			reset();
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Releases the kept planes.
+	 */
+	public synchronized void reset() {
+		retained.clear();
+		key = null;
+		samples = 0;
+	}
+
+	/**
+	 * Profile of the plane z kept from an aborted run, null if none.
+	 */
+	public RadialProfile restore(int z) {
+		return retained.get(z);
+	}
+
+	/**
+	 * Keeps the profile of the completed plane z, unless MAX_RETAINED
+	 * samples are already kept.
+	 */
+	public synchronized void keep(int z, RadialProfile profile) {
+		if (retained.containsKey(z) || samples + profile.getNumberOfSamples() > MAX_RETAINED)
+			return;
+		retained.put(z, profile);
+		samples += profile.getNumberOfSamples();
+	}
+
+	/**
+	 * Number of planes kept in memory.
+	 */
+	public int size() {
+		return retained.size();
+	}
+}
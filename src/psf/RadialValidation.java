@@ -0,0 +1,412 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import psf.bornwolf.BornWolfPSF;
+import psf.gibsonlanni.BesselSeries;
+import psf.gibsonlanni.GibsonLanniPSF;
+import psf.torgovarga.TorokVargaPSF;
+
+/**
+ * Validation of the radial methods against the adaptive Simpson. On a plane
+ * in focus, a plane halfway and the farthest plane of the Born & Wolf and
+ * Gibson & Lanni models, the profile of every method at the best accuracy is
+ * compared to the adaptive Simpson without the Filon quadrature, halfway
+ * between the pixels; the error, relative to the maximum of the profile, has
+ * to stay below the tolerance of the model. The interpolation kernels are
+ * checked on their calibrated grid the same way. The profiles computed by
+ * PARALLELISM workers, split in chunks of radii, have to be bit-identical
+ * to the profiles computed by one worker.
+ * 
+ * It also checks the Bessel functions against their integral
+ * representation, the aperture of the Torok & Varga model when NA exceeds
+ * the index of the sample, and the checkpoint: a profile written and read
+ * back, a corrupted file ignored and the directory removed.
+ * 
+ * The report gives one line per check; the exit status is 1 if a check
+ * fails.
+ */
+public class RadialValidation {
+
+	// Largest error of a method relative to the maximum of the profile. With
+	// NA above ns, the pupil of Gibson & Lanni has a square-root edge at the
+	// critical angle, where every quadrature converges slowly.
+	private static final double	TOLERANCE		= 1E-3;
+	private static final double	TOLERANCE_EDGE	= 5E-3;
+
+	// Largest error of the Bessel functions, twice for J2, on arguments up to
+	// BESSEL_MAX, beyond the table, with the step BESSEL_STEP
+	private static final double	BESSEL_TOL		= 1E-7;
+	private static final double	BESSEL_MAX		= 520.0;
+	private static final double	BESSEL_STEP		= 0.0237;
+
+	// Number of intervals of the integral representation of the Bessel
+	// functions
+	private static final int	BESSEL_INTERVALS	= 1024;
+
+	// Number of workers of the parallel profiles
+	private static final int	PARALLELISM		= 4;
+
+	private static int			failures		= 0;
+
+	public static void main(String[] args) {
+		RadialPSF[] models = new RadialPSF[] { new BornWolfPSF(), new GibsonLanniPSF() };
+		double[] tolerances = new double[] { TOLERANCE, TOLERANCE_EDGE };
+		for (int m = 0; m < models.length; m++) {
+			setup(models[m]);
+			validate(models[m], tolerances[m]);
+			validateParallelism(models[m]);
+		}
+		validateBessel();
+		validateAperture();
+		validateCheckpoint();
+		System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static void setup(RadialPSF psf) {
+		psf.setOpticsParameters(1.4, 610);
+		psf.setResolutionParameters(100, 250);
+		psf.setOutputParameters(128, 128, 32, 0, 0);
+		psf.fetchParameters();
+		psf.rewind();
+		psf.accuracy = 2;
+		psf.interpolation = RadialProfile.INTERPOLATION_LINEAR;
+	}
+
+	/**
+	 * Compares every method of a model whose parameters are already fetched
+	 * to the adaptive Simpson, within the relative error 'tolerance'.
+	 */
+	public static void validate(RadialPSF psf, double tolerance) {
+		int[] planes = new int[] { psf.nz / 2, psf.nz / 4, 0 };
+		double[] r = RadialProfile.getUniformRadii(psf.getMaximumRadius() - 1.0, 1.0);
+		double scale = psf.resLateral * 1E-9;
+		double[] rMeters = new double[r.length];
+		for (int n = 0; n < r.length; n++) {
+			r[n] += 0.5;
+			rMeters[n] = r[n] * scale;
+		}
+
+		DiffractionIntegrand[] integrands = new DiffractionIntegrand[psf.nz];
+		for (int z = 0; z < psf.nz; z++)
+			integrands[z] = psf.createIntegrand(z);
+		HankelTransform hankel = new HankelTransform(integrands, rMeters, psf.accuracy);
+		BesselKernel kernel = new BesselKernel(integrands[0], BesselKernel.getNumberOfIntervals(integrands, rMeters[r.length - 1], psf.accuracy));
+
+		double[] error = new double[7];
+		for (int z : planes) {
+			double[] exact = new double[r.length];
+			KirchhoffDiffraction simpson = psf.createDiffraction(z);
+			simpson.setFilon(false);
+			for (int n = 0; n < r.length; n++)
+				exact[n] = simpson.calculate(rMeters[n]);
+
+			psf.method = RadialPSF.METHOD_SIMPSON;
+			error[0] = Math.max(error[0], getError(psf.computeProfile(z, r), exact));
+			psf.method = RadialPSF.METHOD_GAUSS;
+			error[1] = Math.max(error[1], getError(psf.computeProfile(z, r), exact));
+			error[2] = Math.max(error[2], getError(hankel.getProfile(integrands[z], rMeters), exact));
+			double[][] h = new double[1][r.length];
+			kernel.multiply(rMeters, 0, r.length, new double[][][] { kernel.getPupil(integrands[z]) }, h);
+			error[3] = Math.max(error[3], getError(h[0], exact));
+			error[4] = Math.max(error[4], getError(computeClosedForm(psf, z, r), exact));
+			psf.method = RadialPSF.METHOD_GAUSS;
+			for (int k = RadialProfile.INTERPOLATION_CUBIC; k <= RadialProfile.INTERPOLATION_CHEBYSHEV; k++) {
+				psf.interpolation = k;
+				double[] radii = psf.getRadii();
+				RadialProfile profile = new RadialProfile(radii, psf.computeProfile(z, radii), k);
+				double[] h2 = new double[r.length];
+				profile.getValues(r, h2);
+				error[4 + k] = Math.max(error[4 + k], getError(h2, exact));
+			}
+			psf.interpolation = RadialProfile.INTERPOLATION_LINEAR;
+		}
+		psf.method = RadialPSF.METHOD_SIMPSON;
+
+		String closed = (psf instanceof BornWolfPSF ? "Lommel series" : "Bessel series");
+		String[] names = new String[] { "Simpson and Filon", "Gauss-Legendre", "Hankel transform", "Bessel kernel", closed, "cubic spline", "Chebyshev" };
+		for (int m = 0; m < names.length; m++)
+			check(psf.getShortname() + " " + names[m], error[m], tolerance);
+	}
+
+	/**
+	 * Compares the profiles of the adaptive Simpson and the Gauss-Legendre
+	 * methods computed by one worker and by PARALLELISM workers, with and
+	 * without the waves of the cut-off, on every plane at the default
+	 * accuracy; they have to be bit-identical.
+	 */
+	public static void validateParallelism(final RadialPSF psf) {
+		int accuracy = psf.accuracy;
+		psf.accuracy = 0;
+		psf.setCutoff(RadialPSF.CUTOFF);
+		final double[] r = psf.getRadii();
+		ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+		int[] methods = new int[] { RadialPSF.METHOD_SIMPSON, RadialPSF.METHOD_GAUSS };
+		String[] names = new String[] { "Simpson", "Gauss-Legendre" };
+		for (int m = 0; m < methods.length; m++) {
+			psf.method = methods[m];
+			int different = 0;
+			for (int p = 0; p < psf.nz; p++) {
+				final int z = p;
+				double[] sequential = new RadialExecution(psf).computeProfile(z, r);
+				for (int s = 0; s < 2; s++) {
+					final RadialExecution execution = new RadialExecution(psf);
+					execution.setShallow(s == 1);
+					double[] parallel = pool.invoke(new RecursiveTask<double[]>() {
+						private static final long	serialVersionUID	= 1L;
+
+						@Override
+						protected double[] compute() {
+							return execution.computeProfile(z, r);
+						}
+					});
+					if (!Arrays.equals(sequential, parallel))
+						different++;
+				}
+			}
+			check(psf.getShortname() + " " + names[m] + " on " + PARALLELISM + " workers, profiles not bit-identical to 1 worker", different, 0.0);
+		}
+		psf.method = RadialPSF.METHOD_SIMPSON;
+		psf.accuracy = accuracy;
+		psf.setCutoff(0);
+		pool.shutdown();
+	}
+
+	// Profile of the plane z with the closed-form method of the model
+	private static double[] computeClosedForm(RadialPSF psf, int z, double[] r) {
+		if (psf instanceof BornWolfPSF) {
+			psf.method = BornWolfPSF.METHOD_LOMMEL;
+			return psf.computeProfile(z, r);
+		}
+		double variation = 0.0;
+		DiffractionIntegrand integrand = null;
+		for (int p = 0; p < psf.nz; p++) {
+			integrand = psf.createIntegrand(p);
+			variation = Math.max(variation, 2.0 * Math.PI * integrand.getNumberOfPeriods(0.0));
+		}
+		BesselSeries series = BesselSeries.create(integrand.getUpperLimit(), variation, psf.accuracy);
+		integrand = psf.createIntegrand(z);
+		BesselSeries.Approximation approx = series.fit(integrand);
+		double[] h = new double[r.length];
+		for (int n = 0; n < r.length; n++)
+			h[n] = approx.calculate(r[n] * psf.resLateral * 1E-9 * integrand.getBesselScale(1.0));
+		return h;
+	}
+
+	/**
+	 * J0, J1 and J2 of FastBessel, direct, tabulated, by arrays and in the
+	 * asymptotic form of the Filon quadrature, against the integral
+	 * representation Jn(x) = 1/pi int_0^pi cos(n t - x sin t) dt, over the
+	 * range of the table and beyond; the figures of BesselBenchmark.
+	 */
+	public static void validateBessel() {
+		FastBessel table = FastBessel.getTable();
+		double[] t = new double[BESSEL_INTERVALS + 1];
+		for (int i = 0; i <= BESSEL_INTERVALS; i++)
+			t[i] = Math.PI * i / BESSEL_INTERVALS;
+		int n = (int) Math.ceil(BESSEL_MAX / BESSEL_STEP);
+		double[] x = new double[n];
+		for (int i = 0; i < n; i++)
+			x[i] = i * BESSEL_STEP;
+		double[] a0 = new double[n];
+		double[] a1 = new double[n];
+		table.tabulatedJ0(x, a0, n);
+		table.tabulatedJ1(x, a1, n);
+
+		double[] error = new double[8];
+		double[] pq = new double[2];
+		double[] J = new double[3];
+		for (int i = 0; i < n; i++) {
+			getBessel(x[i], t, J);
+			error[0] = Math.max(error[0], Math.abs(FastBessel.J0(x[i]) - J[0]));
+			error[1] = Math.max(error[1], Math.abs(FastBessel.J1(x[i]) - J[1]));
+			error[2] = Math.max(error[2], Math.abs(FastBessel.J2(x[i]) - J[2]));
+			error[3] = Math.max(error[3], Math.abs(table.tabulatedJ0(x[i]) - J[0]));
+			error[4] = Math.max(error[4], Math.abs(table.tabulatedJ1(x[i]) - J[1]));
+			error[5] = Math.max(error[5], Math.abs(a0[i] - J[0]));
+			error[6] = Math.max(error[6], Math.abs(a1[i] - J[1]));
+			if (x[i] >= 3.0) {
+				FastBessel.asymptoticJ0(x[i], pq);
+				double chi = x[i] - 0.25 * Math.PI;
+				error[7] = Math.max(error[7], Math.abs(pq[0] * Math.cos(chi) - pq[1] * Math.sin(chi) - J[0]));
+			}
+		}
+		String[] names = new String[] { "J0", "J1", "J2", "tabulated J0", "tabulated J1", "tabulated J0 (array)", "tabulated J1 (array)", "asymptotic J0" };
+		for (int i = 0; i < names.length; i++)
+			check("Bessel " + names[i], error[i], (i == 2 ? 2.0 : 1.0) * BESSEL_TOL);
+	}
+
+	// J0, J1 and J2 at x by the integral representation on the nodes t, with
+	// the trapezoidal rule which is spectrally accurate for a periodic
+	// integrand
+	private static void getBessel(double x, double[] t, double[] J) {
+		J[0] = 0.0;
+		J[1] = 0.0;
+		J[2] = 0.0;
+		for (int i = 0; i < t.length; i++) {
+			double w = (i == 0 || i == t.length - 1 ? 0.5 : 1.0);
+			double u = x * Math.sin(t[i]);
+			double c = w * Math.cos(u);
+			double s = w * Math.sin(u);
+			J[0] += c;
+			J[1] += Math.cos(t[i]) * c + Math.sin(t[i]) * s;
+			J[2] += Math.cos(2.0 * t[i]) * c + Math.sin(2.0 * t[i]) * s;
+		}
+		for (int k = 0; k < 3; k++)
+			J[k] /= (t.length - 1);
+	}
+
+	/**
+	 * Aperture of the Torok & Varga model with NA above the index of the
+	 * sample: the upper limit of the integral and the profile in focus are
+	 * finite.
+	 */
+	public static void validateAperture() {
+		TorokVargaPSF psf = new TorokVargaPSF();
+		setup(psf);
+		psf.accuracy = 0;
+		int z = psf.nz / 2;
+		double[] r = RadialProfile.getUniformRadii(8.0, 1.0);
+		double limit = psf.createIntegrand(z).getUpperLimit();
+		double[] h = psf.computeProfile(z, r);
+		boolean finite = !Double.isNaN(limit) && !Double.isInfinite(limit) && h != null && h[0] > 0.0;
+		for (int n = 0; h != null && n < h.length; n++)
+			finite &= !Double.isNaN(h[n]) && !Double.isInfinite(h[n]);
+		check(psf.getShortname() + " aperture, upper limit " + limit, (finite ? 0.0 : 1.0), 0.0);
+	}
+
+	/**
+	 * Round trip of a profile through the checkpoint in a temporary
+	 * directory, then a corrupted file.
+	 */
+	public static void validateCheckpoint() {
+		File base;
+		try {
+			base = File.createTempFile("psf-validation", "");
+		}
+		catch (IOException ex) {
+			check("Checkpoint, temporary directory", 1.0, 0.0);
+			return;
+		}
+		base.delete();
+		base.mkdirs();
+
+		double[] r = RadialProfile.getUniformRadii(32.0, 2.0);
+		double[] h = new double[r.length];
+		for (int n = 0; n < r.length; n++)
+			h[n] = Math.exp(-r[n] * r[n] / 50.0);
+		RadialProfile profile = new RadialProfile(r, h, RadialProfile.INTERPOLATION_CUBIC);
+
+		Checkpoint checkpoint = new Checkpoint(base.getPath(), "validation");
+		boolean saved = checkpoint.save(3, profile);
+		RadialProfile loaded = checkpoint.load(3);
+		double error = (saved && loaded != null && loaded.getInterpolation() == profile.getInterpolation() ? 0.0 : 1.0);
+		for (int n = 0; loaded != null && n < r.length; n++)
+			error = Math.max(error, Math.abs(loaded.getRadii()[n] - r[n]) + Math.abs(loaded.getValues()[n] - h[n]));
+		check("Checkpoint, profile written and read back", error, 0.0);
+
+		// Another key does not read the profile
+		Checkpoint other = new Checkpoint(base.getPath(), "validation other");
+		check("Checkpoint, profile of another key ignored", (other.load(3) == null ? 0.0 : 1.0), 0.0);
+
+		// One byte of the samples flipped, the CRC does not match
+		File[] files = checkpoint.getDirectory().listFiles();
+		boolean corrupted = false;
+		if (files != null && files.length == 1) {
+			RandomAccessFile file = null;
+			try {
+				file = new RandomAccessFile(files[0], "rw");
+				file.seek(file.length() / 2);
+				int b = file.read();
+				file.seek(file.length() / 2);
+				file.write(b ^ 0xFF);
+				corrupted = true;
+			}
+			catch (IOException ex) {
+			}
+			finally {
+				try {
+					if (file != null)
+						file.close();
+				}
+				catch (IOException ex) {
+				}
+			}
+		}
+		check("Checkpoint, corrupted file ignored", (corrupted && checkpoint.load(3) == null ? 0.0 : 1.0), 0.0);
+
+		checkpoint.clear();
+		check("Checkpoint, directory removed", (checkpoint.getDirectory().exists() ? 1.0 : 0.0), 0.0);
+		base.delete();
+	}
+
+	// Largest error relative to the maximum of the exact profile
+	private static double getError(double[] h, double[] exact) {
+		if (h == null)
+			return Double.POSITIVE_INFINITY;
+		double max = 0.0;
+		double error = 0.0;
+		for (int n = 0; n < exact.length; n++) {
+			max = Math.max(max, Math.abs(exact[n]));
+			error = Math.max(error, Math.abs(h[n] - exact[n]));
+		}
+		return error / max;
+	}
+
+	private static void check(String name, double error, double tolerance) {
+		boolean passed = error <= tolerance;
+		if (!passed)
+			failures++;
+		System.out.println((passed ? "passed " : "FAILED ") + name + ": " + error);
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf.bornwolf;
+
+import psf.DiffractionIntegrand;
+
+public class BornWolfIntegrand extends DiffractionIntegrand {
+
+	private double	NA		= 1.4;
+	private double	lambda	= 610;
+	private double	defocus	= 1;
+	private double	ni		= 1.5;
+
+	public BornWolfIntegrand(double defocus, double ni, double NA, double lambda) {
+		this.NA = NA;
+		this.lambda = lambda;
+		this.defocus = defocus;
+		this.ni = ni;
+	}
+
+	@Override
+	public double getLowerLimit() {
+		return 0.0;
+	}
+
+	@Override
+	public double getUpperLimit() {
+		return 1.0;
+	}
+
+	@Override
+	public double getBesselScale(double rho) {
+		double k0 = 2 * Math.PI / lambda;
+		return k0 * NA * rho;
+	}
+
+	@Override
+	public double getPhase(double rho) {
+		// NA is assumed to be less than 1.0, i.e. it assumed to be already
+		// normalized by the refractive index of the immersion layer, ni.
+		double k0 = 2 * Math.PI / lambda;
+		double OPD = NA * NA * defocus * rho * rho / (2.0 * ni);
+		// The imaginary part of the integrand is -J0*sin(W)*rho
+		return -k0 * OPD;
+	}
+
+	@Override
+	public void getAmplitude(double rho, double[] A) {
+		A[0] = rho;
+	}
+}
@@ -50,22 +50,31 @@ import javax.swing.JPanel;
 
 import bilib.commons.components.GridToolbar;
 import bilib.commons.components.SpinnerRangeDouble;
-import bilib.commons.job.runnable.Job;
-import bilib.commons.job.runnable.Pool;
 import bilib.commons.settings.Settings;
-import psf.PSF;
+import psf.DiffractionIntegrand;
+import psf.KirchhoffDiffraction;
+import psf.RadialCutoff;
+import psf.RadialPSF;
+import psf.RadialProfile;
 
 /**
  * @author Hagai Kirshner
  */
 
-public class BornWolfPSF extends PSF {
+public class BornWolfPSF extends RadialPSF {
+
+	// Closed-form evaluation with the Lommel functions
+	public static final int		METHOD_LOMMEL	= 4;
 
 	private double				ni_Default	= 1.5;
 	private SpinnerRangeDouble	spnNI		= new SpinnerRangeDouble(ni_Default, 0, 3, 0.1);
 	private JComboBox			cmbAccuracy	= new JComboBox(new String[] { "Good", "Better", "Best" });
+	private JComboBox			cmbMethod	= new JComboBox(getMethods());
+	private JComboBox			cmbInterp	= new JComboBox(RadialProfile.getInterpolations());
 	private double				ni			= ni_Default;
-	private int					accuracy	= 0;
+
+	// Number of radii computed by quadrature in the Lommel method
+	private long				fallbacks	= 0;
 
 	public BornWolfPSF() {
 		fullname = "Born & Wolf 3D Optical Model";
@@ -98,16 +107,25 @@ public class BornWolfPSF extends PSF {
 		return "";
 	}
 
+	@Override
+	public String[] getMethods() {
+		return new String[] { "Adaptive Simpson", "Bessel kernel", "Gauss-Legendre", "Hankel transform", "Lommel series" };
+	}
+
 	@Override
 	public void resetParameters() {
 		spnNI.set(ni_Default);
 		cmbAccuracy.setSelectedIndex(0);
+		cmbMethod.setSelectedIndex(0);
+		cmbInterp.setSelectedIndex(0);
 	}
 
 	@Override
 	public void fetchParameters() {
 		ni = spnNI.get();
 		accuracy = cmbAccuracy.getSelectedIndex();
+		method = cmbMethod.getSelectedIndex();
+		interpolation = cmbInterp.getSelectedIndex();
 	}
 
 	@Override
@@ -115,85 +133,92 @@ public class BornWolfPSF extends PSF {
 		GridToolbar pn = new GridToolbar(false);
 		pn.place(03, 0, "<html>Refractive index immersion</html>");
 		pn.place(06, 0, "<html>Accuracy computation</html>");
+		pn.place(07, 0, "<html>Method computation</html>");
+		pn.place(8, 0, "<html>Radial interpolation</html>");
 
 		pn.place(03, 1, spnNI);
 		pn.place(06, 1, cmbAccuracy);
+		pn.place(07, 1, cmbMethod);
+		pn.place(8, 1, cmbInterp);
 
 		pn.place(03, 2, new JLabel("<html>ni</html>"));
 		JPanel panel = new JPanel();
 		panel.add(pn);
 		settings.record("psf-" + shortname + "-NI", spnNI, "" + ni_Default);
 		settings.record("psf-" + shortname + "-accuracy", cmbAccuracy, (String) cmbAccuracy.getItemAt(0));
+		settings.record("psf-" + shortname + "-method", cmbMethod, (String) cmbMethod.getItemAt(0));
+		settings.record("psf-" + shortname + "-interpolation", cmbInterp, (String) cmbInterp.getItemAt(0));
 		return panel;
 	}
 
 	@Override
-	public void generate(Pool pool) {
-		for (int z = 0; z < nz; z++) {
-			double defocus = resAxial * 1E-9 * (z - (nz - 1.0) / 2.0);
-			BornWolf plane = new BornWolf(z, defocus);
-			plane.addMonitor(this);
-			pool.register(plane);
-		}
+	public int getOverSampling() {
+		return 1;
 	}
 
-	public class BornWolf extends Job {
-
-		private int		OVER_SAMPLING	= 1;
-		private int		z;
-		private double	defocus;
-
-		public BornWolf(int z, double defocus) {
-			this.z = z;
-			this.defocus = defocus;
-		}
-
-		@Override
-		public void process() {
-
-			// The center of the image in units of [pixels]
-			double x0 = (nx - 1) / 2.0;
-			double y0 = (ny - 1) / 2.0;
-
-			// Lateral particle position in units of [pixels]
-			double xp = x0;
-			double yp = y0;
-
-			// Radial locations.
-			// double xpAbs = Math.abs(xp), ypAbs = Math.abs(yp);
-			// double maxRadialDistanceInPixels =
-			// Math.round(Math.sqrt((xpAbs+nx-x0)*(xpAbs+nx-x0)+(ypAbs+ny-y0)*(ypAbs+ny-y0)))+1;
-			int maxRadius = ((int) Math.round(Math.sqrt((nx - x0) * (nx - x0) + (ny - y0) * (ny - y0)))) + 1;
-			double[] r = new double[maxRadius * OVER_SAMPLING];
-			double[] h = new double[r.length];
-
-			KirchhoffDiffractionSimpson I = new KirchhoffDiffractionSimpson(defocus, ni, accuracy, NA, lambda);
+	@Override
+	public void process() {
+		fallbacks = 0;
+		super.process();
+		if (live && isVerbose() && method == METHOD_LOMMEL)
+			print(getShortname() + ": Lommel series, " + fallbacks + " radii computed by quadrature");
+	}
 
-			for (int n = 0; n < r.length; n++) {
-				r[n] = ((double) n) / ((double) OVER_SAMPLING);
+	@Override
+	public double[] computeProfile(int z, double[] r) {
+		if (method != METHOD_LOMMEL)
+			return super.computeProfile(z, r);
+
+		// Axial and lateral optical coordinates
+		double k0 = 2 * Math.PI / lambda;
+		double defocus = resAxial * 1E-9 * (z - (nz - 1.0) / 2.0);
+		double u = k0 * NA * NA * defocus / ni;
+
+		LommelSeries lommel = new LommelSeries();
+		KirchhoffDiffraction I = null;
+		double[] h = new double[r.length];
+		RadialCutoff cut = createCutoff(z, r);
+		for (int n = 0; n < r.length; n++) {
+			double v = k0 * NA * r[n] * resLateral * 1E-9;
+			h[n] = lommel.calculate(u, v);
+			if (Double.isNaN(h[n])) {
+				// The series converges too slowly, back to the quadrature
+				if (I == null)
+					I = createDiffraction(z);
 				h[n] = I.calculate(r[n] * resLateral * 1E-9);
-				if (!live)
-					return;
-			}
-
-			// Linear interpolation of the pixels values
-			double[] slice = new double[nx * ny];
-			for (int x = 0; x < nx; x++) {
-				for (int y = 0; y < ny; y++) {
-					// radius of the current pixel in units of [pixels]
-					double rPixel = Math.sqrt((x - xp) * (x - xp) + (y - yp) * (y - yp));
-					// Index of nearest coordinate from bellow
-					int index = (int) Math.floor(rPixel * OVER_SAMPLING);
-					// Interpolated value.
-					slice[x + nx * y] = h[index] + (h[index + 1] - h[index]) * (rPixel - r[index]) * OVER_SAMPLING;
+				if (I.isCancelled())
+					return null;
+				synchronized (this) {
+					fallbacks++;
 				}
-				if (!live)
-					return;
 			}
+			if (!live)
+				return null;
+			if (cut != null && cut.add(r[n], h[n])) {
+				truncate(n + 1, h);
+				break;
+			}
+		}
+		return h;
+	}
 
-			increment(90.0 / nz, "" + z + " / " + nz);
-			data.data[z] = slice;
+	@Override
+	public String getParameterKey() {
+		return super.getParameterKey() + " ni=" + ni;
+	}
 
-		}
+	/**
+	 * The pupil has no aberration, the intensity is symmetric under defocus
+	 * -> -defocus.
+	 */
+	@Override
+	public boolean isAxiallySymmetric() {
+		return true;
+	}
+
+	@Override
+	public DiffractionIntegrand createIntegrand(int z) {
+		double defocus = resAxial * 1E-9 * (z - (nz - 1.0) / 2.0);
+		return new BornWolfIntegrand(defocus, ni, NA, lambda);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,166 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+package psf.bornwolf;
+
+import psf.FastBessel;
+
+/**
+ * Closed-form evaluation of the Born & Wolf diffraction integral
+ * 
+ * F(u, v) = int_0^1 J0(v * rho) * exp(-i * u * rho^2 / 2) * rho * drho
+ * 
+ * by the Lommel functions (Born & Wolf, Principles of Optics, 8.8)
+ * 
+ * U_n(u, v) = sum_s (-1)^s * (u / v)^(n + 2s) * J_(n + 2s)(v)
+ * V_n(u, v) = sum_s (-1)^s * (v / u)^(n + 2s) * J_(n + 2s)(v)
+ * 
+ * The U series is used inside the geometrical shadow (|u / v| < 1), the V
+ * series outside, so the ratio of the series is always below 1:
+ * 
+ * |F|^2 = (U1^2 + U2^2) / u^2
+ * |F|^2 = (1 + V0^2 + V1^2 - 2 * V0 * cos(t) - 2 * V1 * sin(t)) / u^2, with
+ * t = (u + v^2 / u) / 2
+ * 
+ * The Bessel functions J_n(v) of all the orders are computed together by
+ * the backward recurrence of Miller. The number of orders needed grows with
+ * v; beyond MAX_ORDER the series is declared too slow and the caller falls
+ * back to the numerical quadrature.
+ */
+public class LommelSeries {
+
+	// Largest order of the Bessel functions
+	public static final int	MAX_ORDER	= 2048;
+
+	// Workspace of the Bessel functions J_n(v)
+	private double[]	J			= new double[64];
+
+	/**
+	 * Squared modulus of F(u, v) with the scale of the Simpson sums of the
+	 * engine, or NaN if the series would need more than MAX_ORDER orders.
+	 */
+	public double calculate(double u, double v) {
+		u = Math.abs(u);
+		v = Math.abs(v);
+		if (u < 1E-6) {
+			// Focal plane: F = J1(v) / v
+			if (v < 1E-8)
+				return 9.0 * 0.25;
+			double F = FastBessel.J1(v) / v;
+			return 9.0 * F * F;
+		}
+		if (v < 1E-8) {
+			// Optical axis: |F| = |sin(u / 4)| / (u / 2)
+			double F = Math.sin(u / 4.0) / (u / 2.0);
+			return 9.0 * F * F;
+		}
+
+		int n = getNumberOfOrders(v);
+		if (n > MAX_ORDER)
+			return Double.NaN;
+		bessel(v, n);
+
+		if (u < v) {
+			double U1 = lommel(1, u / v, n);
+			double U2 = lommel(2, u / v, n);
+			return 9.0 * (U1 * U1 + U2 * U2) / (u * u);
+		}
+		double V0 = lommel(0, v / u, n);
+		double V1 = lommel(1, v / u, n);
+		double t = 0.5 * (u + v * v / u);
+		double I = 1.0 + V0 * V0 + V1 * V1 - 2.0 * V0 * Math.cos(t) - 2.0 * V1 * Math.sin(t);
+		return 9.0 * Math.max(0.0, I) / (u * u);
+	}
+
+	// Sum_s (-1)^s * ratio^(order + 2s) * J_(order + 2s)(v), the orders
+	// beyond n being negligible
+	private double lommel(int order, double ratio, int n) {
+		double power = Math.pow(ratio, order);
+		double ratio2 = ratio * ratio;
+		double sum = 0.0;
+		for (int m = order; m <= n; m += 4) {
+			sum += power * J[m];
+			power *= ratio2;
+			if (m + 2 <= n)
+				sum -= power * J[m + 2];
+			power *= ratio2;
+		}
+		return sum;
+	}
+
+	// Number of orders such that J_n(v) is negligible beyond
+	private static int getNumberOfOrders(double v) {
+		return (int) Math.ceil(v + 10.0 * Math.cbrt(v) + 30.0);
+	}
+
+	// J_m(v) for m = 0 ... n by the backward recurrence of Miller,
+	// normalized by J0 + 2 * (J2 + J4 + ...) = 1
+	private void bessel(double v, int n) {
+		int start = n + 16 + (int) Math.sqrt(40.0 * n);
+		start += start % 2;
+		if (J.length < start + 2)
+			J = new double[start + 2];
+		double next = 0.0;
+		double current = 1E-300;
+		double norm = 0.0;
+		for (int m = start; m > 0; m--) {
+			double previous = 2.0 * m / v * current - next;
+			next = current;
+			current = previous;
+			if (m - 1 <= n)
+				J[m - 1] = current;
+			if ((m - 1) % 2 == 0)
+				norm += (m - 1 == 0 ? current : 2.0 * current);
+			// Rescaling to avoid overflows
+			if (Math.abs(current) > 1E250) {
+				current *= 1E-250;
+				next *= 1E-250;
+				norm *= 1E-250;
+				for (int k = m - 1; k <= n; k++)
+					J[k] *= 1E-250;
+			}
+		}
+		for (int m = 0; m <= n; m++)
+			J[m] /= norm;
+	}
+}
@@ -0,0 +1,259 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+package psf.gibsonlanni;
+
+import psf.DiffractionIntegrand;
+import psf.FastBessel;
+
+/**
+ * Bessel-series approximation of the Gibson & Lanni diffraction integral.
+ * The phase term is approximated by a linear combination of Bessel
+ * functions,
+ * 
+ * exp(i * W(rho)) = sum_m c_m * J0(sigma_m * rho),
+ * 
+ * fitted in the least-squares sense on [0, b] with the weight rho. The
+ * frequencies sigma_m are the zeros of J1(sigma * b) (Dini series), so the
+ * basis is orthogonal for this weight and the fit is well conditioned. The
+ * integral of every term against the kernel J0(v * rho) * rho has a closed
+ * form, hence the radial profile is obtained without numerical quadrature.
+ * 
+ * The basis, the sampling points and the QR factorization of the
+ * least-squares system depend only on the run; only the right-hand side
+ * depends on the plane.
+ */
+public class BesselSeries {
+
+	private double		b;			// upper limit of the integral
+	private int			M;			// number of terms
+	private int			K;			// number of sampling points
+	private double[]	sigma;		// frequencies of the basis
+	private double[]	J0b;		// J0(sigma_m * b)
+	private double[]	samples;	// sampling points of the fit
+	private double[]	rows;		// weight of the sampling points
+	private double[][]	basis;		// J0(sigma_m * rho_k)
+
+	// Householder QR factorization of the K x M basis matrix
+	private double[][]	qr;
+	private double[]	rdiag;
+
+	public BesselSeries(double b, int M, int K) {
+		this.b = b;
+		this.M = M;
+		this.K = K;
+		sigma = new double[M];
+		J0b = new double[M];
+		for (int m = 0; m < M; m++) {
+			sigma[m] = zeroJ1(m) / b;
+			J0b[m] = FastBessel.J0(sigma[m] * b);
+		}
+		// Midpoints of K regular intervals, weighted by rho
+		samples = new double[K];
+		rows = new double[K];
+		for (int k = 0; k < K; k++) {
+			samples[k] = b * (k + 0.5) / K;
+			rows[k] = Math.sqrt(samples[k]);
+		}
+
+		basis = new double[K][M];
+		qr = new double[K][M];
+		for (int k = 0; k < K; k++)
+			for (int m = 0; m < M; m++) {
+				basis[k][m] = FastBessel.J0(sigma[m] * samples[k]);
+				qr[k][m] = rows[k] * basis[k][m];
+			}
+		rdiag = new double[M];
+		factorize();
+	}
+
+	/**
+	 * Series for a phase of total variation 'variation' over [0, b]. The
+	 * number of terms follows the accuracy (0: Good, 1: Better, 2: Best).
+	 */
+	public static BesselSeries create(double b, double variation, int accuracy) {
+		double factor = (accuracy == 0 ? 2.0 : (accuracy == 1 ? 4.0 : 8.0));
+		int M = (int) Math.ceil(factor * variation / Math.PI) + 16;
+		return new BesselSeries(b, M, 8 * M);
+	}
+
+	// m-th zero of J1, the first one being 0
+	private static double zeroJ1(int m) {
+		if (m == 0)
+			return 0.0;
+		// McMahon's expansion refined by Newton iterations
+		double beta = (m + 0.25) * Math.PI;
+		double x = beta - 3.0 / (8.0 * beta);
+		for (int iter = 0; iter < 20; iter++) {
+			double J1 = FastBessel.J1(x);
+			double dx = J1 / (FastBessel.J0(x) - J1 / x);
+			x -= dx;
+			if (Math.abs(dx) < 1E-14 * x)
+				break;
+		}
+		return x;
+	}
+
+	public int getNumberOfTerms() {
+		return M;
+	}
+
+	/**
+	 * Fits the phase term of the integrand. The residual of the fit is the
+	 * relative root mean square error at the sampling points.
+	 */
+	public Approximation fit(DiffractionIntegrand integrand) {
+		double[] yr = new double[K];
+		double[] yi = new double[K];
+		for (int k = 0; k < K; k++) {
+			double W = integrand.getPhase(samples[k]);
+			yr[k] = rows[k] * Math.cos(W);
+			yi[k] = rows[k] * Math.sin(W);
+		}
+		Approximation approx = new Approximation();
+		approx.re = solve(yr.clone());
+		approx.im = solve(yi.clone());
+
+		double error = 0.0;
+		for (int k = 0; k < K; k++) {
+			double er = -yr[k];
+			double ei = -yi[k];
+			for (int m = 0; m < M; m++) {
+				er += approx.re[m] * rows[k] * basis[k][m];
+				ei += approx.im[m] * rows[k] * basis[k][m];
+			}
+			error += er * er + ei * ei;
+		}
+		// The norm of the right-hand side is the sum of the weights
+		approx.residual = Math.sqrt(error / (K * b / 2.0));
+		return approx;
+	}
+
+	/**
+	 * Closed form of the integral of J0(sigma * rho) * J0(v * rho) * rho on
+	 * [0, b], for the term m. J1(sigma_m * b) vanishes by construction.
+	 */
+	private double integral(int m, double v, double J1v) {
+		double s = sigma[m];
+		if (Math.abs(s - v) * b < 1E-8)
+			return 0.5 * b * b * J0b[m] * J0b[m];
+		return -b * v * J0b[m] * J1v / (s * s - v * v);
+	}
+
+	// Householder QR factorization, in place
+	private void factorize() {
+		for (int j = 0; j < M; j++) {
+			double norm = 0.0;
+			for (int i = j; i < K; i++)
+				norm = Math.hypot(norm, qr[i][j]);
+			if (norm != 0.0) {
+				if (qr[j][j] < 0)
+					norm = -norm;
+				for (int i = j; i < K; i++)
+					qr[i][j] /= norm;
+				qr[j][j] += 1.0;
+				for (int l = j + 1; l < M; l++) {
+					double s = 0.0;
+					for (int i = j; i < K; i++)
+						s += qr[i][j] * qr[i][l];
+					s = -s / qr[j][j];
+					for (int i = j; i < K; i++)
+						qr[i][l] += s * qr[i][j];
+				}
+			}
+			rdiag[j] = -norm;
+		}
+	}
+
+	// Least-squares solution of the system for the right-hand side y
+	private double[] solve(double[] y) {
+		for (int j = 0; j < M; j++) {
+			if (qr[j][j] == 0.0)
+				continue;
+			double s = 0.0;
+			for (int i = j; i < K; i++)
+				s += qr[i][j] * y[i];
+			s = -s / qr[j][j];
+			for (int i = j; i < K; i++)
+				y[i] += s * qr[i][j];
+		}
+		double[] c = new double[M];
+		for (int j = M - 1; j >= 0; j--) {
+			double s = y[j];
+			for (int l = j + 1; l < M; l++)
+				s -= qr[j][l] * c[l];
+			c[j] = (rdiag[j] == 0.0 ? 0.0 : s / rdiag[j]);
+		}
+		return c;
+	}
+
+	/**
+	 * Series coefficients of one plane.
+	 */
+	public class Approximation {
+
+		private double[]	re;
+		private double[]	im;
+		private double		residual;
+
+		public double getResidual() {
+			return residual;
+		}
+
+		/**
+		 * Squared modulus of the diffraction integral for the Bessel
+		 * argument v = k0 * NA * r, with the scale of the Simpson sums.
+		 */
+		public double calculate(double v) {
+			double J1v = FastBessel.J1(v * b);
+			double sumRe = 0.0;
+			double sumIm = 0.0;
+			for (int m = 0; m < M; m++) {
+				double F = integral(m, v, J1v);
+				sumRe += re[m] * F;
+				sumIm += im[m] * F;
+			}
+			return 9.0 * (sumRe * sumRe + sumIm * sumIm);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf.gibsonlanni;
+
+import psf.DiffractionIntegrand;
+
+public class GibsonLanniIntegrand extends DiffractionIntegrand {
+
+	// Gibson & Lanni parameters of the acquisition
+	private GibsonLanniParameters	p;
+
+	private double					NA		= 1.4;
+	private double					lambda	= 610;
+
+	// Terms of the phase shared by all the planes, null if not available
+	private GibsonLanniTable		table;
+
+	// Model which reports the samples beyond the critical angle, null if none
+	private GibsonLanniPSF			monitor;
+
+	public GibsonLanniIntegrand(GibsonLanniParameters p, double NA, double lambda) {
+		this.p = new GibsonLanniParameters(p);
+		this.NA = NA;
+		this.lambda = lambda;
+	}
+
+	public GibsonLanniIntegrand(GibsonLanniParameters p, double NA, double lambda, GibsonLanniTable table) {
+		this(p, NA, lambda);
+		this.table = table;
+	}
+
+	public void setMonitor(GibsonLanniPSF monitor) {
+		this.monitor = monitor;
+	}
+
+	@Override
+	public int getRepetitions(int accuracy) {
+		if (accuracy == 0)
+			return 4;
+		else if (accuracy == 1)
+			return 5;
+		else if (accuracy == 2)
+			return 6;
+		return 3;
+	}
+
+	@Override
+	public double getLowerLimit() {
+		return 0.0;
+	}
+
+	@Override
+	public double getUpperLimit() {
+		return Math.min(1, p.ns / NA);
+	}
+
+	@Override
+	public double getBesselScale(double rho) {
+		double k0 = 2 * Math.PI / lambda;
+		return k0 * NA * rho;
+	}
+
+	@Override
+	public double getPhase(double rho) {
+		double k0 = 2 * Math.PI / lambda;
+		double OPD, OPD1, OPD3; // Optical path differences
+
+		if ((NA * rho / p.ns) > 1 && monitor != null)
+			monitor.warnOutside(rho);
+
+		// Saving some computation time
+		OPD1 = p.ns * p.particleAxialPosition * Math.sqrt(1 - (NA * rho / p.ns) * (NA * rho / p.ns));
+		OPD3 = p.ni * (p.ti - p.ti0) * Math.sqrt(1 - (NA * rho / p.ni) * (NA * rho / p.ni));
+		OPD = OPD1 + OPD3;
+
+		return k0 * OPD;
+	}
+
+	@Override
+	public double getPhase(double rho, int node) {
+		if (table == null || node < 0)
+			return getPhase(rho);
+		double k0 = 2 * Math.PI / lambda;
+		return k0 * (table.opd1[node] + p.ni * (p.ti - p.ti0) * table.sqrtNi[node]);
+	}
+
+	@Override
+	public void getAmplitude(double rho, double[] A) {
+		A[0] = rho;
+	}
+}
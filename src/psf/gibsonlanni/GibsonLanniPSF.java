@@ -49,15 +49,19 @@ import javax.swing.JPanel;
 
 import bilib.commons.components.GridToolbar;
 import bilib.commons.components.SpinnerRangeDouble;
-import bilib.commons.job.runnable.Job;
 import bilib.commons.job.runnable.Pool;
 import bilib.commons.settings.Settings;
-import psf.PSF;
+import psf.DiffractionIntegrand;
+import psf.RadialPSF;
+import psf.RadialProfile;
 
 /**
  * @author Hagai Kirshner
  */
-public class GibsonLanniPSF extends PSF {
+public class GibsonLanniPSF extends RadialPSF {
+
+	// Closed-form evaluation with a Bessel series of the phase term
+	public static final int			METHOD_SERIES	= 4;
 
 	private double					ni_Default		= 1.5;
 	private double					ns_Default		= 1.33;
@@ -69,10 +73,19 @@ public class GibsonLanniPSF extends PSF {
 	private SpinnerRangeDouble		spnTI			= new SpinnerRangeDouble(ti_Default, 0, 9999.0, 100);
 	private SpinnerRangeDouble		spnZPos			= new SpinnerRangeDouble(zpos_Default, -99999999.0, 99999999.0, 10);
 	private JComboBox				cmbAccuracy		= new JComboBox(new String[] { "Good", "Better", "Best" });
+	private JComboBox				cmbMethod		= new JComboBox(getMethods());
+	private JComboBox				cmbInterp		= new JComboBox(RadialProfile.getInterpolations());
 
-	protected int					accuracy		= 0;
 	protected GibsonLanniParameters	p;
 
+	private BesselSeries			series;
+	private GibsonLanniTable		table;
+	private double					residual;
+
+	// Sample of the pupil beyond the critical angle of the sample, reported
+	// once per run
+	private boolean					outside;
+
 	public GibsonLanniPSF() {
 		fullname = "Gibson & Lanni 3D Optical Model";
 		shortname = "GL";
@@ -87,6 +100,11 @@ public class GibsonLanniPSF extends PSF {
 		return desc;
 	}
 
+	@Override
+	public String[] getMethods() {
+		return new String[] { "Adaptive Simpson", "Bessel kernel", "Gauss-Legendre", "Hankel transform", "Bessel series" };
+	}
+
 	@Override
 	public void resetParameters() {
 		spnNI.set(ni_Default);
@@ -94,6 +112,8 @@ public class GibsonLanniPSF extends PSF {
 		spnTI.set(ti_Default);
 		spnZPos.set(zpos_Default);
 		cmbAccuracy.setSelectedIndex(0);
+		cmbMethod.setSelectedIndex(0);
+		cmbInterp.setSelectedIndex(0);
 	}
 
 	@Override
@@ -103,6 +123,8 @@ public class GibsonLanniPSF extends PSF {
 		p.ti0 = spnTI.get() * 1E-6;
 		p.particleAxialPosition = spnZPos.get() * 1E-9;
 		accuracy = cmbAccuracy.getSelectedIndex();
+		method = cmbMethod.getSelectedIndex();
+		interpolation = cmbInterp.getSelectedIndex();
 	}
 
 	@Override
@@ -113,12 +135,16 @@ public class GibsonLanniPSF extends PSF {
 		pn.place(04, 0, "Working distance (ti)");
 		pn.place(11, 0, "Particle position Z");
 		pn.place(13, 0, "Accuracy computation");
+		pn.place(14, 0, "Method computation");
+		pn.place(15, 0, "Radial interpolation");
 
 		pn.place(02, 1, spnNI);
 		pn.place(03, 1, spnNS);
 		pn.place(04, 1, spnTI);
 		pn.place(11, 1, spnZPos);
 		pn.place(13, 1, cmbAccuracy);
+		pn.place(14, 1, cmbMethod);
+		pn.place(15, 1, cmbInterp);
 
 		pn.place(02, 2, "<html>n<sub>i</sub></html>");
 		pn.place(03, 2, "<html>n<sub>s</sub></html>");
@@ -131,18 +157,96 @@ public class GibsonLanniPSF extends PSF {
 		settings.record("psf-" + shortname + "-TI", spnTI, "" + ti_Default);
 		settings.record("psf-" + shortname + "-ZPos", spnZPos, "" + zpos_Default);
 		settings.record("psf-" + shortname + "-accuracy", cmbAccuracy, (String) cmbAccuracy.getItemAt(0));
+		settings.record("psf-" + shortname + "-method", cmbMethod, (String) cmbMethod.getItemAt(0));
+		settings.record("psf-" + shortname + "-interpolation", cmbInterp, (String) cmbInterp.getItemAt(0));
 		return panel;
 	}
 
+	@Override
+	public void process() {
+		super.process();
+		if (live && isVerbose() && series != null)
+			print(getShortname() + ": Bessel series of " + series.getNumberOfTerms() + " terms, residual " + residual);
+		series = null;
+		table = null;
+	}
+
 	@Override
 	public void generate(Pool pool) {
-		for (int z = 0; z < nz; z++) {
-			GibsonLanniParameters param = new GibsonLanniParameters(p);
-			param.ti = p.ti0 + resAxial * 1E-9 * (z - (nz - 1.0) / 2.0);
-			GibsonLanni gb = new GibsonLanni(param, accuracy, z);
-			gb.addMonitor(this);
-			pool.register(gb);
+		series = null;
+		residual = 0.0;
+		outside = false;
+		table = null;
+		if (method == METHOD_SIMPSON) {
+			// The adaptive Simpson samples the pupil on the dyadic grid
+			DiffractionIntegrand integrand = createIntegrand(0);
+			table = new GibsonLanniTable(p, NA, integrand.getLowerLimit(), integrand.getUpperLimit());
 		}
+		if (method == METHOD_SERIES) {
+			double variation = 0.0;
+			DiffractionIntegrand integrand = null;
+			for (int z = 0; z < nz; z++) {
+				integrand = createIntegrand(z);
+				variation = Math.max(variation, 2.0 * Math.PI * integrand.getNumberOfPeriods(0.0));
+			}
+			series = BesselSeries.create(integrand.getUpperLimit(), variation, accuracy);
+		}
+		super.generate(pool);
+	}
+
+	@Override
+	public double[] computeProfile(int z, double[] r) {
+		if (series == null)
+			return super.computeProfile(z, r);
+
+		DiffractionIntegrand integrand = createIntegrand(z);
+		BesselSeries.Approximation approx = series.fit(integrand);
+		if (!live)
+			return null;
+		synchronized (this) {
+			residual = Math.max(residual, approx.getResidual());
+		}
+		double[] h = new double[r.length];
+		for (int n = 0; n < r.length; n++) {
+			h[n] = approx.calculate(r[n] * resLateral * 1E-9 * integrand.getBesselScale(1.0));
+			if (!live)
+				return null;
+		}
+		return h;
+	}
+
+	/**
+	 * Largest residual of the fit of the Bessel series over the planes of the
+	 * last run, the relative root mean square error of the phase term at the
+	 * sampling points; 0 for the other methods.
+	 */
+	public double getSeriesResidual() {
+		return residual;
+	}
+
+	/**
+	 * Reports once per run that the pupil is sampled beyond the critical
+	 * angle of the sample, where the phase is not defined.
+	 */
+	public synchronized void warnOutside(double rho) {
+		if (outside)
+			return;
+		outside = true;
+		print(getShortname() + ": pupil sampled beyond the critical angle of the sample, NA*rho/ns > 1 at rho=" + rho + " (ns=" + p.ns + ", NA=" + NA + ")");
+	}
+
+	@Override
+	public String getParameterKey() {
+		return super.getParameterKey() + " ni=" + p.ni + " ns=" + p.ns + " ng=" + p.ng + " ti0=" + p.ti0 + " tg0=" + p.tg0 + " zpos=" + p.particleAxialPosition;
+	}
+
+	@Override
+	public DiffractionIntegrand createIntegrand(int z) {
+		GibsonLanniParameters param = new GibsonLanniParameters(p);
+		param.ti = p.ti0 + resAxial * 1E-9 * (z - (nz - 1.0) / 2.0);
+		GibsonLanniIntegrand integrand = new GibsonLanniIntegrand(param, NA, lambda, table);
+		integrand.setMonitor(this);
+		return integrand;
 	}
 
 	@Override
@@ -156,62 +260,4 @@ public class GibsonLanniPSF extends PSF {
 		return "";
 	}
 
-	public class GibsonLanni extends Job {
-
-		private int						OVER_SAMPLING	= 2;
-		private GibsonLanniParameters	param;
-		private int						z;
-		private int						accuracy;
-
-		public GibsonLanni(GibsonLanniParameters param, int accuracy, int z) {
-			this.accuracy = accuracy;
-			this.z = z;
-			this.param = param;
-		}
-
-		@Override
-		public void process() {
-
-			// The center of the image in units of [pixels]
-			double x0 = (nx - 1) / 2.0;
-			double y0 = (ny - 1) / 2.0;
-
-			// Lateral particle position in units of [pixels]
-			double xp = x0;// 0.0/p.pixelSize;
-			double yp = y0;// 0.0/p.pixelSize;
-
-			// Radial locations.
-			// double xpAbs = Math.abs(xp), ypAbs = Math.abs(yp);
-			// double maxRadialDistanceInPixels =
-			// Math.round(Math.sqrt((xpAbs+nx-x0)*(xpAbs+nx-x0)+(ypAbs+ny-y0)*(ypAbs+ny-y0)))+1;
-			int maxRadius = ((int) Math.round(Math.sqrt((nx - x0) * (nx - x0) + (ny - y0) * (ny - y0)))) + 1;
-			double[] r = new double[maxRadius * OVER_SAMPLING];
-			double[] h = new double[r.length];
-
-			KirchhoffDiffractionSimpson I = new KirchhoffDiffractionSimpson(param, accuracy, NA, lambda);
-			for (int n = 0; n < r.length; n++) {
-				r[n] = ((double) n) / ((double) OVER_SAMPLING);
-				h[n] = I.calculate(r[n] * resLateral * 1E-9);
-				if (!live)
-					return;
-			}
-			// Linear interpolation of the pixels values
-			double[] slice = new double[nx * ny];
-			double rPixel, value;
-			int index;
-			for (int x = 0; x < nx; x++) {
-				for (int y = 0; y < ny; y++) {
-					rPixel = Math.sqrt((x - xp) * (x - xp) + (y - yp) * (y - yp));
-					index = (int) Math.floor(rPixel * OVER_SAMPLING);
-					value = h[index] + (h[index + 1] - h[index]) * (rPixel - r[index]) * OVER_SAMPLING;
-					slice[x + nx * y] = value;
-				}
-				if (!live)
-					return;
-			}
-			setPlane(z, slice);
-			increment(90.0 / nz, "" + z + " / " + nz);
-		}
-	}
-
 }
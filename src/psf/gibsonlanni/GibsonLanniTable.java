@@ -0,0 +1,72 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+package psf.gibsonlanni;
+
+import psf.DiffractionIntegrand;
+
+/**
+ * Terms of the Gibson & Lanni phase which do not depend on the plane,
+ * sampled once per run on the dyadic grid of DiffractionIntegrand. The
+ * phase of a plane is then k0 * (OPD1 + ni * (ti - ti0) * sqrtNi).
+ */
+public class GibsonLanniTable {
+
+	// Optical path difference of the sample layer, ns * zp * sqrt(1 - (NA * rho / ns)^2)
+	public double[]	opd1;
+
+	// sqrt(1 - (NA * rho / ni)^2)
+	public double[]	sqrtNi;
+
+	public GibsonLanniTable(GibsonLanniParameters p, double NA, double a, double b) {
+		int n = (1 << DiffractionIntegrand.TABLE_LEVELS) + 1;
+		opd1 = new double[n];
+		sqrtNi = new double[n];
+		double del = (b - a) / (n - 1);
+		for (int i = 0; i < n; i++) {
+			double rho = a + i * del;
+			opd1[i] = p.ns * p.particleAxialPosition * Math.sqrt(1 - (NA * rho / p.ns) * (NA * rho / p.ns));
+			sqrtNi[i] = Math.sqrt(1 - (NA * rho / p.ni) * (NA * rho / p.ni));
+		}
+	}
+}
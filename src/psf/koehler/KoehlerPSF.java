@@ -197,7 +197,7 @@ public class KoehlerPSF extends PSF {
 			if (!live)
 				return;
 
-			data.data[z] = slice;
+			data.setPlane(z, slice);
 			increment(90.0 / nz, "" + z + " / " + nz );
 		}
 
@@ -0,0 +1,99 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf.richardswolf;
+
+import psf.DiffractionIntegrand;
+
+public class RichardsWolfIntegrand extends DiffractionIntegrand {
+
+	// Richards & Wolf parameters of the acquisition
+	private double	defocus	= 1;
+	private double	ni		= 1.5;
+	private double	NA		= 1.4;
+	private double	lambda	= 610;
+
+	public RichardsWolfIntegrand(double defocus, double ni, double NA, double lambda) {
+		this.NA = NA;
+		this.lambda = lambda;
+		this.ni = ni;
+		this.defocus = defocus;
+		components = 3;
+		weights = new double[] { 1.0, 2.0, 1.0 };
+		orders = new int[] { 0, 1, 2 };
+	}
+
+	@Override
+	public double getLowerLimit() {
+		return 0.0;
+	}
+
+	@Override
+	public double getUpperLimit() {
+		return Math.asin(NA / ni); // This is alpha in equation (3) of the paper
+	}
+
+	@Override
+	public double getBesselScale(double theta) {
+		double k_tag = (2 * Math.PI * ni / lambda);
+		return k_tag * Math.sin(theta);
+	}
+
+	@Override
+	public double getPhase(double theta) {
+		double k_tag = (2 * Math.PI * ni / lambda);
+		double OPD = defocus * Math.cos(theta);
+		return k_tag * OPD;
+	}
+
+	@Override
+	public void getAmplitude(double theta, double[] A) {
+		double sinTheta = Math.sin(theta);
+		double cosTheta = Math.cos(theta);
+		double sqrtCosThetaSinTheta = Math.sqrt(cosTheta) * sinTheta;
+		A[0] = sqrtCosThetaSinTheta * (1 + cosTheta);
+		A[1] = sqrtCosThetaSinTheta * sinTheta;
+		A[2] = sqrtCosThetaSinTheta * (1 - cosTheta);
+	}
+}
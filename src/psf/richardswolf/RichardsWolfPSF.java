@@ -50,20 +50,21 @@ import javax.swing.JPanel;
 
 import bilib.commons.components.GridToolbar;
 import bilib.commons.components.SpinnerRangeDouble;
-import bilib.commons.job.runnable.Job;
-import bilib.commons.job.runnable.Pool;
 import bilib.commons.settings.Settings;
-import psf.PSF;
+import psf.DiffractionIntegrand;
+import psf.RadialPSF;
+import psf.RadialProfile;
 
-public class RichardsWolfPSF extends PSF {
+public class RichardsWolfPSF extends RadialPSF {
 
 	private double				ni_Default	= 1.5;
 
 	private SpinnerRangeDouble	spnNI		= new SpinnerRangeDouble(ni_Default, 0, 3, 0.1, 5);
 	private JComboBox			cmbAccuracy	= new JComboBox(new String[] { "Good", "Better", "Best" });
+	private JComboBox			cmbMethod	= new JComboBox(getMethods());
+	private JComboBox			cmbInterp	= new JComboBox(RadialProfile.getInterpolations());
 
 	private double				ni			= 1.5;
-	private int					accuracy	= 0;
 
 	public RichardsWolfPSF() {
 		fullname = "Richards & Wolf 3D Optical Model";
@@ -94,12 +95,16 @@ public class RichardsWolfPSF extends PSF {
 	public void resetParameters() {
 		spnNI.set(ni_Default);
 		cmbAccuracy.setSelectedIndex(0);
+		cmbMethod.setSelectedIndex(0);
+		cmbInterp.setSelectedIndex(0);
 	}
 
 	@Override
 	public void fetchParameters() {
 		ni = spnNI.get();
 		accuracy = cmbAccuracy.getSelectedIndex();
+		method = cmbMethod.getSelectedIndex();
+		interpolation = cmbInterp.getSelectedIndex();
 	}
 
 	@Override
@@ -107,86 +112,41 @@ public class RichardsWolfPSF extends PSF {
 		GridToolbar pn = new GridToolbar(false);
 		pn.place(03, 0, "<html>Refractive index immersion</html>");
 		pn.place(06, 0, "<html>Accuracy computation</html>");
+		pn.place(07, 0, "<html>Method computation</html>");
+		pn.place(8, 0, "<html>Radial interpolation</html>");
 
 		pn.place(03, 1, spnNI);
 		pn.place(06, 1, cmbAccuracy);
+		pn.place(07, 1, cmbMethod);
+		pn.place(8, 1, cmbInterp);
 
 		pn.place(03, 2, new JLabel("<html>ni</html>"));
 		JPanel panel = new JPanel();
 		panel.add(pn);
 		settings.record("psf-" + shortname + "-NI", spnNI, "" + ni_Default);
 		settings.record("psf-" + shortname + "-accuracy", cmbAccuracy, (String) cmbAccuracy.getItemAt(0));
+		settings.record("psf-" + shortname + "-method", cmbMethod, (String) cmbMethod.getItemAt(0));
+		settings.record("psf-" + shortname + "-interpolation", cmbInterp, (String) cmbInterp.getItemAt(0));
 		return panel;
 	}
 
 	@Override
-	public void generate(Pool pool) {
-		for (int z = 0; z < nz; z++) {
-			double defocus = resAxial * 1E-9 * (z - (nz - 1.0) / 2.0);
-			RichardsWolf plane = new RichardsWolf(z, defocus);
-			plane.addMonitor(this);
-			pool.register(plane);
-		}
+	public String getParameterKey() {
+		return super.getParameterKey() + " ni=" + ni;
 	}
 
-	public class RichardsWolf extends Job {
-
-		private int		OVER_SAMPLING	= 2;
-		private int		z;
-		private double	defocus;
-
-		public RichardsWolf(int z, double defocus) {
-			this.defocus = defocus;
-			this.z = z;
-		}
-
-		@Override
-		public void process() {
-
-			// The center of the image in units of [pixels]
-			double x0 = (nx - 1) / 2.0;
-			double y0 = (ny - 1) / 2.0;
-
-			// Lateral particle position in units of [pixels]
-			double xp = x0;// 0.0/p.pixelSize;
-			double yp = y0;// 0.0/p.pixelSize;
-
-			// Radial locations.
-			// double xpAbs = Math.abs(xp), ypAbs = Math.abs(yp);
-			// double maxRadialDistanceInPixels =
-			// Math.round(Math.sqrt((xpAbs+nx-x0)*(xpAbs+nx-x0)+(ypAbs+ny-y0)*(ypAbs+ny-y0)))+1;
-			int maxRadius = ((int) Math.round(Math.sqrt((nx - x0) * (nx - x0) + (ny - y0) * (ny - y0)))) + 1;
-			double[] r = new double[maxRadius * OVER_SAMPLING];
-			double[] h = new double[r.length];
-
-			KirchhoffDiffractionSimpson I = new KirchhoffDiffractionSimpson(defocus, ni, accuracy, NA, lambda);
-			// KirchhoffDiffraction I = new KirchhoffDiffraction(p,accuracy);
-			for (int n = 0; n < r.length; n++) {
-				r[n] = ((double) n) / ((double) OVER_SAMPLING);
-				// h[n] = I.calculate(r[n] * p.lateralResolution);
-				h[n] = I.calculate(r[n] * resLateral * 1E-9);
-				if (!live)
-					return;
-			}
-
-			// Linear interpolation of the pixels values
-			double[] slice = new double[nx * ny];
-			double rPixel, value;
-			int index;
-			for (int x = 0; x < nx; x++) {
-				for (int y = 0; y < ny; y++) {
-					rPixel = Math.sqrt((x - xp) * (x - xp) + (y - yp) * (y - yp));
-					index = (int) Math.floor(rPixel * OVER_SAMPLING);
-					value = h[index] + (h[index + 1] - h[index]) * (rPixel - r[index]) * OVER_SAMPLING;
-
-					slice[x + nx * y] = value;
-				}
-				if (!live)
-					return;
-			}
-
-			data.data[z] = slice;
-			increment(90.0 / nz, "" + z + " / " + nz);
-		}
+	/**
+	 * The pupil has no aberration, the intensity is symmetric under defocus
+	 * -> -defocus.
+	 */
+	@Override
+	public boolean isAxiallySymmetric() {
+		return true;
+	}
+
+	@Override
+	public DiffractionIntegrand createIntegrand(int z) {
+		double defocus = resAxial * 1E-9 * (z - (nz - 1.0) / 2.0);
+		return new RichardsWolfIntegrand(defocus, ni, NA, lambda);
 	}
 }
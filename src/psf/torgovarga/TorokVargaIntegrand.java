@@ -0,0 +1,155 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf.torgovarga;
+
+import psf.DiffractionIntegrand;
+
+public class TorokVargaIntegrand extends DiffractionIntegrand {
+
+	// Torok & Varga parameters of the acquisition
+	private TorokVargaParameters	p;
+
+	// Terms shared by all the planes, null if not available
+	private TorokVargaTable			table;
+
+	public TorokVargaIntegrand(TorokVargaParameters p) {
+		this.p = p;
+		components = 3;
+		weights = new double[] { 1.0, 2.0, 1.0 };
+		// B0, B1 and B2 are the integrals of the orders 0, 1 and 2 of the
+		// Bessel function of the first kind, each with its own order
+		orders = new int[] { 0, 1, 2 };
+	}
+
+	public TorokVargaIntegrand(TorokVargaParameters p, TorokVargaTable table) {
+		this(p);
+		this.table = table;
+	}
+
+	@Override
+	public double getLowerLimit() {
+		return 0.0;
+	}
+
+	@Override
+	public double getUpperLimit() {
+		// Aperture, limited to the critical angle if ns < ni
+		return Math.min(p.alpha, Math.asin(Math.min(1.0, p.ns / p.ni)));
+	}
+
+	@Override
+	public double getBesselScale(double theta) {
+		return p.kni * Math.sin(theta);
+	}
+
+	@Override
+	public double getPhase(double theta) {
+		double sinTheta = Math.sin(theta);
+		double niNiSinThetaSinTheta = p.ni * p.ni * sinTheta * sinTheta;
+		double sqrtNs = Math.sqrt(p.ns * p.ns - niNiSinThetaSinTheta);
+		if (Double.isNaN(sqrtNs))
+			sqrtNs = 0;
+
+		double OPD, OPD1, OPD2; // Optical path differences
+		// Aguet's thesis, page 52
+		// OPD1 = p.particleAxialPosition*Math.sqrt(ns*ns-niNiSinThetaSinTheta);
+		// OPD2 = p.ti*Math.sqrt(p.ni*p.ni-niNiSinThetaSinTheta);
+		// OPD3 = -p.ti0*Math.sqrt(p.ni0*p.ni0-niNISinThetaSinTheta);
+		// OPD4 = p.tg*Math.sqrt(ng*ng-niNISinThetaSinTheta);
+		// OPD5 = -p.tg0*Math.sqrt(ng0*ng0-niNISinThetaSinTheta);
+		// OPD = OPD1+OPD2+OPD3+OPD4+OPD5;
+
+		// Saving on computation time
+		OPD1 = p.particleAxialPosition * sqrtNs;
+		OPD2 = (p.ti - p.ti0) * Math.sqrt(p.ni * p.ni - niNiSinThetaSinTheta);
+		OPD = OPD1 + OPD2;
+		return p.k * OPD;
+	}
+
+	@Override
+	public double getPhase(double theta, int node) {
+		if (table == null || node < 0)
+			return getPhase(theta);
+		return p.k * (table.opd1[node] + (p.ti - p.ti0) * table.sqrtNi[node]);
+	}
+
+	@Override
+	public void getAmplitude(double theta, int node, double[] A) {
+		if (table == null || node < 0) {
+			getAmplitude(theta, A);
+			return;
+		}
+		A[0] = table.amplitude[0][node];
+		A[1] = table.amplitude[1][node];
+		A[2] = table.amplitude[2][node];
+	}
+
+	@Override
+	public void getAmplitude(double theta, double[] A) {
+		double sinTheta = Math.sin(theta);
+		double cosTheta = Math.cos(theta);
+		double sinThetaSinTheta = sinTheta * sinTheta;
+		double sqrtCosThetaSinTheta = Math.sqrt(cosTheta) * sinTheta;
+		double niNiSinThetaSinTheta = p.ni * p.ni * sinThetaSinTheta;
+
+		// Fresnel coefficients
+		double sqrtNs = Math.sqrt(p.ns * p.ns - niNiSinThetaSinTheta);
+		if (Double.isNaN(sqrtNs))
+			sqrtNs = 0;
+		double sqrtNg = Math.sqrt(p.ng * p.ng - niNiSinThetaSinTheta);
+		if (Double.isNaN(sqrtNg))
+			sqrtNg = 0;
+		double ts1ts2 = 4.0 * p.ni * cosTheta * sqrtNg;
+		double tp1tp2 = ts1ts2;
+		double constNs;
+		ts1ts2 /= (p.ni * cosTheta + sqrtNg) * (sqrtNg + sqrtNs);
+		tp1tp2 /= (p.ng * cosTheta + p.ni / p.ng * sqrtNg) * (p.ns / p.ng * sqrtNg + p.ng / p.ns * sqrtNs);
+		constNs = tp1tp2 * sqrtNs / p.ns; // used for I0 and I3
+
+		A[0] = sqrtCosThetaSinTheta * (ts1ts2 + constNs);
+		A[1] = sqrtCosThetaSinTheta * tp1tp2 * p.ni * sinTheta / p.ns;
+		A[2] = sqrtCosThetaSinTheta * (ts1ts2 - constNs);
+	}
+}
@@ -44,19 +44,21 @@
 
 package psf.torgovarga;
 
+import javax.swing.JComboBox;
 import javax.swing.JPanel;
 
 import bilib.commons.components.GridToolbar;
 import bilib.commons.components.SpinnerRangeDouble;
-import bilib.commons.job.runnable.Job;
 import bilib.commons.job.runnable.Pool;
 import bilib.commons.settings.Settings;
-import psf.PSF;
+import psf.DiffractionIntegrand;
+import psf.RadialPSF;
+import psf.RadialProfile;
 
 /**
  * @author Hagai Kirshner
  */
-public class TorokVargaPSF extends PSF {
+public class TorokVargaPSF extends RadialPSF {
 
 	private double					ni_Default		= 1.5;
 	private double					ns_Default		= 1.0;
@@ -67,9 +69,13 @@ public class TorokVargaPSF extends PSF {
 	private SpinnerRangeDouble		spnNS			= new SpinnerRangeDouble(ns_Default, 0, 3, 0.1);
 	private SpinnerRangeDouble		spnTI			= new SpinnerRangeDouble(ti_Default, 0, 999999.0, 100);
 	private SpinnerRangeDouble		spnZPos			= new SpinnerRangeDouble(zpos_Default, -99999999.0, 99999999.0, 10);
+	private JComboBox				cmbMethod		= new JComboBox(getMethods());
+	private JComboBox				cmbInterp		= new JComboBox(RadialProfile.getInterpolations());
 
 	protected TorokVargaParameters	p;
 
+	private TorokVargaTable			table;
+
 	public TorokVargaPSF() {
 		fullname = "Torok & Varga 3D Optical Model";
 		shortname = "TV";
@@ -98,6 +104,8 @@ public class TorokVargaPSF extends PSF {
 		spnNS.set(ns_Default);
 		spnTI.set(ti_Default);
 		spnZPos.set(zpos_Default);
+		cmbMethod.setSelectedIndex(0);
+		cmbInterp.setSelectedIndex(0);
 	}
 
 	public int getNumberBlankLines() {
@@ -110,6 +118,9 @@ public class TorokVargaPSF extends PSF {
 		p.ns = spnNS.get();
 		p.ti0 = spnTI.get() * 1E-6;
 		p.particleAxialPosition = spnZPos.get() * 1E-9;
+		p.calculateConstants(NA, lambda);
+		method = cmbMethod.getSelectedIndex();
+		interpolation = cmbInterp.getSelectedIndex();
 	}
 
 	@Override
@@ -119,10 +130,14 @@ public class TorokVargaPSF extends PSF {
 		pn.place(03, 0, "Refractive index sample");
 		pn.place(04, 0, "Working distance (ti)");
 		pn.place(11, 0, "Particle position Z");
+		pn.place(13, 0, "Method computation");
+		pn.place(14, 0, "Radial interpolation");
 		pn.place(02, 1, spnNI);
 		pn.place(03, 1, spnNS);
 		pn.place(04, 1, spnTI);
 		pn.place(11, 1, spnZPos);
+		pn.place(13, 1, cmbMethod);
+		pn.place(14, 1, cmbInterp);
 		pn.place(02, 2, "<html>n<sub>i</sub></html>");
 		pn.place(03, 2, "<html>n<sub>s</sub></html>");
 		pn.place(04, 2, "<html>[&mu;m]</html>");
@@ -133,76 +148,38 @@ public class TorokVargaPSF extends PSF {
 		settings.record("psf-" + shortname + "-NS", spnNS, "" + ns_Default);
 		settings.record("psf-" + shortname + "-TI", spnTI, "" + ti_Default);
 		settings.record("psf-" + shortname + "-ZPos", spnZPos, "" + zpos_Default);
+		settings.record("psf-" + shortname + "-method", cmbMethod, (String) cmbMethod.getItemAt(0));
+		settings.record("psf-" + shortname + "-interpolation", cmbInterp, (String) cmbInterp.getItemAt(0));
 		return panel;
 	}
 
+	@Override
+	public void process() {
+		super.process();
+		table = null;
+	}
+
 	@Override
 	public void generate(Pool pool) {
-		for (int z = 0; z < nz; z++) {
-			TorokVargaParameters param = new TorokVargaParameters(p);
-			param.ti = p.ti0 + resAxial * 1E-9 * (z - (nz - 1.0) / 2.0);
-			TorokVarga plane = new TorokVarga(param, z);
-			plane.addMonitor(this);
-			pool.register(plane);
+		table = null;
+		if (method == METHOD_SIMPSON) {
+			// The adaptive Simpson samples the integrand on the dyadic grid
+			TorokVargaIntegrand integrand = new TorokVargaIntegrand(p);
+			table = new TorokVargaTable(integrand, p);
 		}
+		super.generate(pool);
 	}
 
-	public class TorokVarga extends Job {
-
-		private int						OVER_SAMPLING	= 2;
-		private TorokVargaParameters	p;
-		private int						z;
-
-		public TorokVarga(TorokVargaParameters p, int z) {
-			this.z = z;
-			this.p = p;
-		}
+	@Override
+	public String getParameterKey() {
+		return super.getParameterKey() + " ni=" + p.ni + " ns=" + p.ns + " ng=" + p.ng + " ti0=" + p.ti0 + " tg0=" + p.tg0 + " zpos=" + p.particleAxialPosition;
+	}
 
-		@Override
-		public void process() {
-
-			// The center of the image in units of [pixels]
-			double x0 = (nx - 1) / 2.0;
-			double y0 = (ny - 1) / 2.0;
-
-			// Lateral particle position in units of [pixels]
-			double xp = x0;// 0.0/p.pixelSize;
-			double yp = y0;// 0.0/p.pixelSize;
-
-			// Radial locations.
-			// double xpAbs = Math.abs(xp), ypAbs = Math.abs(yp);
-			// double maxRadialDistanceInPixels =
-			// Math.round(Math.sqrt((xpAbs+nx-x0)*(xpAbs+nx-x0)+(ypAbs+ny-y0)*(ypAbs+ny-y0)))+1;
-			int maxRadius = ((int) Math.round(Math.sqrt((nx - x0) * (nx - x0) + (ny - y0) * (ny - y0)))) + 1;
-			double[] r = new double[maxRadius * OVER_SAMPLING];
-			double[] h = new double[r.length];
-
-			KirchhoffDiffractionSimpson I = new KirchhoffDiffractionSimpson(p, 0);
-			// KirchhoffDiffraction I = new KirchhoffDiffraction(p,accuracy);
-			for (int n = 0; n < r.length; n++) {
-				r[n] = ((double) n) / ((double) OVER_SAMPLING);
-				h[n] = I.calculate(r[n] * resLateral * 1E-9);
-				if (!live)
-					return;
-			}
-
-			// Linear interpolation of the pixels values
-			double slice[] = new double[nx * ny];
-			double rPixel, value;
-			int index;
-			for (int x = 0; x < nx; x++) {
-				for (int y = 0; y < ny; y++) {
-					rPixel = Math.sqrt((x - xp) * (x - xp) + (y - yp) * (y - yp));
-					index = (int) Math.floor(rPixel * OVER_SAMPLING);
-					value = h[index] + (h[index + 1] - h[index]) * (rPixel - r[index]) * OVER_SAMPLING;
-					slice[x + nx * y] = value;
-				}
-				if (!live)
-					return;
-			}
-			setPlane(z, slice);
-			increment(90.0 / nz, "" + z + " / " + nz);
-		}
+	@Override
+	public DiffractionIntegrand createIntegrand(int z) {
+		TorokVargaParameters param = new TorokVargaParameters(p);
+		param.ti = p.ti0 + resAxial * 1E-9 * (z - (nz - 1.0) / 2.0);
+		return new TorokVargaIntegrand(param, table);
 	}
 
 }
@@ -110,8 +110,12 @@ public class TorokVargaParameters {
 		this.kni = p.kni;
 	}
 
+	/**
+	 * Aperture angle in the immersion medium, sin(alpha) = NA / ni, and wave
+	 * numbers. Called by fetchParameters() once ni is known.
+	 */
 	public void calculateConstants(double NA, double lambda) {
-		alpha = Math.asin(NA);
+		alpha = Math.asin(Math.min(1.0, NA / ni));
 		k = 2 * Math.PI / lambda;
 		kni = k * ni;
 	}
@@ -0,0 +1,88 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+package psf.torgovarga;
+
+import psf.DiffractionIntegrand;
+
+/**
+ * Terms of the Torok & Varga integrand which depend only on theta: the
+ * Fresnel amplitudes of the three components, the optical path difference
+ * of the sample layer and the square root of the immersion layer. They are
+ * sampled once per run on the dyadic grid of DiffractionIntegrand.
+ */
+public class TorokVargaTable {
+
+	// Amplitudes of the components I0, I1, I2
+	public double[][]	amplitude;
+
+	// Optical path difference of the sample layer, zp * sqrt(ns^2 - ni^2 * sin^2)
+	public double[]		opd1;
+
+	// sqrt(ni^2 - ni^2 * sin^2)
+	public double[]		sqrtNi;
+
+	public TorokVargaTable(TorokVargaIntegrand integrand, TorokVargaParameters p) {
+		int n = (1 << DiffractionIntegrand.TABLE_LEVELS) + 1;
+		double a = integrand.getLowerLimit();
+		double b = integrand.getUpperLimit();
+		double del = (b - a) / (n - 1);
+		amplitude = new double[3][n];
+		opd1 = new double[n];
+		sqrtNi = new double[n];
+		double[] A = new double[3];
+		for (int i = 0; i < n; i++) {
+			double theta = a + i * del;
+			integrand.getAmplitude(theta, A);
+			for (int c = 0; c < 3; c++)
+				amplitude[c][i] = A[c];
+			double sinTheta = Math.sin(theta);
+			double niNiSinThetaSinTheta = p.ni * p.ni * sinTheta * sinTheta;
+			double sqrtNs = Math.sqrt(p.ns * p.ns - niNiSinThetaSinTheta);
+			if (Double.isNaN(sqrtNs))
+				sqrtNs = 0;
+			opd1[i] = p.particleAxialPosition * sqrtNs;
+			sqrtNi[i] = Math.sqrt(p.ni * p.ni - niNiSinThetaSinTheta);
+		}
+	}
+}
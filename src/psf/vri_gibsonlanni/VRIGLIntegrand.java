@@ -0,0 +1,193 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package psf.vri_gibsonlanni;
+
+import psf.DiffractionIntegrand;
+
+public class VRIGLIntegrand extends DiffractionIntegrand {
+
+	// Gibson & Lanni parameters of the acquisition
+	private VRIGLParameters	p;
+	private double			resLateral	= 100;
+	private double			resAxial	= 250;
+
+	// Optical path difference of the specimen, null if not available
+	private VRIGLTable		table;
+
+	public VRIGLIntegrand(VRIGLParameters p, double resLateral, double resAxial) {
+		this.p = p;
+		this.resLateral = resLateral;
+		this.resAxial = resAxial;
+	}
+
+	public VRIGLIntegrand(VRIGLParameters p, double resLateral, double resAxial, VRIGLTable table) {
+		this(p, resLateral, resAxial);
+		this.table = table;
+	}
+
+	@Override
+	public double getLowerLimit() {
+		return 0.0;
+	}
+
+	@Override
+	public double getUpperLimit() {
+		return Math.min(1, p.ni / p.NA);
+	}
+
+	@Override
+	public double getBesselScale(double rho) {
+		double k0 = 2 * Math.PI / p.lambda;
+		return k0 * p.NA * rho;
+	}
+
+	@Override
+	public double getPhase(double rho) {
+		return getPhase(rho, -1);
+	}
+
+	@Override
+	public double getPhase(double rho, int node) {
+		double k0 = 2 * Math.PI / p.lambda;
+		double OPD, OPD1, OPD3; // Optical path differences
+
+		// OPD1 =
+		// p.ns*p.particleAxialPosition*Math.sqrt(1-(p.NA*rho/p.ns)*(p.NA*rho/p.ns));
+		// OPD3 = p.ni*(p.ti-p.ti0)*Math.sqrt(1-(p.NA*rho/p.ni)*(p.NA*rho/p.ni));
+		// OPD = OPD1+OPD3;
+
+		// Modified G&L
+		if (table == null)
+			OPD1 = getSampleOPD(rho);
+		else if (node >= 0)
+			OPD1 = table.get(node);
+		else
+			OPD1 = table.interpolate(rho);
+		OPD3 = p.ni * (p.ti - p.ti0) * Math.sqrt(1 - (p.NA * rho / p.ni) * (p.NA * rho / p.ni));
+		OPD = OPD1 + OPD3;
+
+		return k0 * OPD;
+	}
+
+	@Override
+	public void getAmplitude(double rho, double[] A) {
+		A[0] = rho;
+	}
+
+	/**
+	 * Optical path difference of the specimen, summed over the layers
+	 * between the coverslip and the particle.
+	 */
+	public double getSampleOPD(double rho) {
+		int zint = (int) Math.ceil(p.particleAxialPosition / (resAxial * 1E-9));
+		return (resLateral * 1E-9) * angleinterm(zint, p.ns1, p.ns2, p.NA, rho, p.type);
+	}
+
+	/**
+	 * Values of rho where the term sqrt(|n(l) - NA*rho|) of a layer is not
+	 * differentiable, n(l) / NA, for the refractive indices n(l) of the
+	 * layers of angleinterm().
+	 */
+	public double[] getKinks() {
+		int zin = (int) Math.ceil(p.particleAxialPosition / (resAxial * 1E-9));
+		if (zin <= 0 || p.type < 0 || p.type > 2)
+			return new double[0];
+		double[] kinks = new double[zin];
+		for (int l = 0; l < zin; l++) {
+			double n;
+			if (p.type == 0)
+				n = (p.ns2 - p.ns1) / zin * l + p.ns1;
+			else if (p.type == 1)
+				n = Math.log((Math.exp(p.ns2) - Math.exp(p.ns1)) / zin * l + Math.exp(p.ns1));
+			else
+				n = Math.exp((Math.log(p.ns2) - Math.log(p.ns1)) / zin * l + Math.log(p.ns1));
+			kinks[l] = n / p.NA;
+		}
+		return kinks;
+	}
+
+	/**
+	 * Optical path difference of the layer whose kink is at 'kink', see
+	 * getKinks(): the term sqrt(|n(l) - NA*rho|) of angleinterm(), scaled as
+	 * getSampleOPD().
+	 */
+	public double getLayerOPD(double kink, double rho) {
+		return (resLateral * 1E-9) * Math.sqrt(Math.abs(p.NA * (kink - rho)));
+	}
+
+	// Variantions in refractive index within the specimen
+	private double angleinterm(int zin, double ns1, double ns2, double NA, double rho, int type) {
+		double sumaRI = 0;
+		if (type == 0) {
+			// Linear
+			double b = ns1;
+			double a = (ns2 - b) / zin;
+			for (int l = 0; l < zin; l++) {
+				// Linear
+				sumaRI += Math.sqrt(Math.abs(a * l + b - NA * rho));
+			}
+		}
+		else if (type == 1) {
+			// Lograthmic
+			double b = Math.exp(ns1);
+			double a = (Math.exp(ns2) - b) / zin;
+			for (int l = 0; l < zin; l++) {
+				// Logrithm
+				sumaRI += Math.sqrt(Math.abs(Math.log(a * l + b) - NA * rho));
+			}
+		}
+		else if (type == 2) {
+			// Exponential
+			double b = Math.log(ns1);
+			double a = (Math.log(ns2) - b) / zin;
+			for (int l = 0; l < zin; l++) {
+				// Exponential
+				sumaRI += Math.sqrt(Math.abs(Math.exp(a * l + b) - NA * rho));
+			}
+		}
+		return sumaRI;
+	}
+
+}
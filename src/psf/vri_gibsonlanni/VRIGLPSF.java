@@ -49,15 +49,16 @@ import javax.swing.JPanel;
 
 import bilib.commons.components.GridToolbar;
 import bilib.commons.components.SpinnerRangeDouble;
-import bilib.commons.job.runnable.Job;
 import bilib.commons.job.runnable.Pool;
 import bilib.commons.settings.Settings;
-import psf.PSF;
+import psf.DiffractionIntegrand;
+import psf.RadialPSF;
+import psf.RadialProfile;
 
 /**
  * @author Sameer Hiware
  */
-public class VRIGLPSF extends PSF {
+public class VRIGLPSF extends RadialPSF {
 
 	private double				ni_Default		= 1.5;
 	private double				ng_Default		= 1.5;
@@ -77,10 +78,12 @@ public class VRIGLPSF extends PSF {
 	private SpinnerRangeDouble	spnTG			= new SpinnerRangeDouble(tg_Default, 0, 999999.0, 100);
 	private SpinnerRangeDouble	spnZPos			= new SpinnerRangeDouble(zpos_Default, -99999999.0, 99999999.0, 10);
 	private JComboBox			cmbAccuracy		= new JComboBox(new String[] { "Good", "Better", "Best" });
+	private JComboBox			cmbMethod		= new JComboBox(getMethods());
+	private JComboBox			cmbInterp		= new JComboBox(RadialProfile.getInterpolations());
 
 	protected VRIGLParameters	p;
-	VRIGL[]						gb;
-	public int					accuracy		= 0;
+
+	private VRIGLTable			table;
 
 	public VRIGLPSF() {
 		fullname = "Variable Refractive Index Gibson & Lanni";
@@ -99,6 +102,8 @@ public class VRIGLPSF extends PSF {
 		spnTG.set(tg_Default);
 		spnZPos.set(zpos_Default);
 		cmbAccuracy.setSelectedIndex(0);
+		cmbMethod.setSelectedIndex(0);
+		cmbInterp.setSelectedIndex(0);
 	}
 
 	@Override
@@ -112,7 +117,11 @@ public class VRIGLPSF extends PSF {
 		p.ti0 = spnTI.get() * 1E-6;
 		p.tg0 = spnTG.get() * 1E-6;
 		p.particleAxialPosition = spnZPos.get() * 1E-9;
+		p.NA = NA;
+		p.lambda = lambda;
 		accuracy = cmbAccuracy.getSelectedIndex();
+		method = cmbMethod.getSelectedIndex();
+		interpolation = cmbInterp.getSelectedIndex();
 	}
 
 	@Override
@@ -125,6 +134,8 @@ public class VRIGLPSF extends PSF {
 		pn.place(06, 0, "Working distance (ti)");
 		pn.place(11, 0, "Particle position Zp");
 		pn.place(14, 0, "Accuracy computation");
+		pn.place(15, 0, "Method computation");
+		pn.place(16, 0, "Radial interpolation");
 
 		pn.place(02, 1, spnNI);
 		pn.place(03, 1, spnNS1);
@@ -133,6 +144,8 @@ public class VRIGLPSF extends PSF {
 		pn.place(06, 1, spnTI);
 		pn.place(11, 1, spnZPos);
 		pn.place(14, 1, cmbAccuracy);
+		pn.place(15, 1, cmbMethod);
+		pn.place(16, 1, cmbInterp);
 
 		pn.place(01, 2, "<html>[nm]</html>");
 		pn.place(02, 2, "<html>n<sub>i</sub></html>");
@@ -151,6 +164,8 @@ public class VRIGLPSF extends PSF {
 		settings.record("psf-" + shortname + "-TG", spnTG, "" + tg_Default);
 		settings.record("psf-" + shortname + "-ZPos", spnZPos, "" + zpos_Default);
 		settings.record("psf-" + shortname + "-accuracy", cmbAccuracy, (String) cmbAccuracy.getItemAt(0));
+		settings.record("psf-" + shortname + "-method", cmbMethod, (String) cmbMethod.getItemAt(0));
+		settings.record("psf-" + shortname + "-interpolation", cmbInterp, (String) cmbInterp.getItemAt(0));
 		return panel;
 	}
 
@@ -165,75 +180,38 @@ public class VRIGLPSF extends PSF {
 		return "";
 	}
 
+	@Override
+	public void process() {
+		super.process();
+		table = null;
+	}
+
 	@Override
 	public void generate(Pool pool) {
-		for (int z = 0; z < nz; z++) {
-			VRIGLParameters param = new VRIGLParameters(p);
-			param.ti = p.ti0 + resAxial * 1E-9 * (z - (nz - 1.0) / 2.0);
-			VRIGL plane = new VRIGL(param, z);
-			plane.addMonitor(this);
-			pool.register(plane);
-		}
+		// The specimen term does not depend on the plane
+		table = new VRIGLTable(new VRIGLIntegrand(p, resLateral, resAxial));
+		super.generate(pool);
 	}
 
-	public class VRIGL extends Job {
-
-		private int				OVER_SAMPLING	= 2;
-		private VRIGLParameters	p;
-		private int				z;
-
-		public VRIGL(VRIGLParameters p, int z) {
-			this.z = z;
-			this.p = p;
-		}
-
-		@Override
-		public void process() {
-
-			// The center of the image in units of [pixels]
-			double x0 = (nx - 1) / 2.0;
-			double y0 = (ny - 1) / 2.0;
-
-			// Lateral particle position in units of [pixels]
-			double xp = x0;// 0.0/p.pixelSize;
-			double yp = y0;// 0.0/p.pixelSize;
-
-			// Radial locations.
-			// double xpAbs = Math.abs(xp), ypAbs = Math.abs(yp);
-			// double maxRadialDistanceInPixels =
-			// Math.round(Math.sqrt((xpAbs+nx-x0)*(xpAbs+nx-x0)+(ypAbs+ny-y0)*(ypAbs+ny-y0)))+1;
-			int maxRadius = ((int) Math.round(Math.sqrt((nx - x0) * (nx - x0) + (ny - y0) * (ny - y0)))) + 1;
-			double[] r = new double[maxRadius * OVER_SAMPLING];
-			double[] h = new double[r.length];
-
-			KirchhoffDiffractionSimpson I = new KirchhoffDiffractionSimpson(p, accuracy, z, resLateral, resAxial);
-			for (int n = 0; n < r.length; n++) {
-				r[n] = ((double) n) / ((double) OVER_SAMPLING);
-				h[n] = I.calculate(r[n] * resLateral * 1E-9);
-				if (!live)
-					return;
-			}
-
-			// Linear interpolation of the pixels values
-			double slice[] = new double[nx * ny];
-			double rPixel, value;
-			int index;
-			for (int x = 0; x < nx; x++) {
-				for (int y = 0; y < ny; y++) {
-					// radius of the current pixel in units of [pixels]
-					rPixel = Math.sqrt((x - xp) * (x - xp) + (y - yp) * (y - yp));
-					// Index of nearest coordinate from bellow
-					index = (int) Math.floor(rPixel * OVER_SAMPLING);
-					// Interpolated value.
-					value = h[index] + (h[index + 1] - h[index]) * (rPixel - r[index]) * OVER_SAMPLING;
-					slice[x + nx * y] = value;
-				}
-				if (!live)
-					return;
-			}
-			setPlane(z, slice);
-			increment(90.0 / nz, "" + z + " / " + nz);
-		}
+	@Override
+	public double getSamplesPerPixel() {
+		// The Chebyshev panels need a finer grid on this model, see
+		// RadialCalibration
+		if (interpolation == RadialProfile.INTERPOLATION_CHEBYSHEV && accuracy > 0)
+			return 8.0;
+		return super.getSamplesPerPixel();
+	}
+
+	@Override
+	public String getParameterKey() {
+		return super.getParameterKey() + " ni=" + p.ni + " ng=" + p.ng + " ns1=" + p.ns1 + " ns2=" + p.ns2 + " type=" + p.type + " ti0=" + p.ti0 + " tg0=" + p.tg0 + " zpos=" + p.particleAxialPosition;
+	}
+
+	@Override
+	public DiffractionIntegrand createIntegrand(int z) {
+		VRIGLParameters param = new VRIGLParameters(p);
+		param.ti = p.ti0 + resAxial * 1E-9 * (z - (nz - 1.0) / 2.0);
+		return new VRIGLIntegrand(param, resLateral, resAxial, table);
 	}
 
 	@Override
@@ -0,0 +1,166 @@
+/**
+ * PSFGenerator
+ * 
+ * Authors: Daniel Sage and Hagai Kirshner
+ * Organization: Biomedical Imaging Group (BIG), Ecole Polytechnique Federale de Lausanne
+ * Address: EPFL-STI-IMT-LIB, 1015 Lausanne, Switzerland
+ * Information: http://bigwww.epfl.ch/algorithms/psfgenerator/
+ *
+ * References:
+ * [1] H. Kirshner, F. Aguet, D. Sage, M. Unser
+ * 3-D PSF Fitting for Fluorescence Microscopy: Implementation and Localization Application 
+ * Journal of Microscopy, vol. 249, no. 1, pp. 13-25, January 2013.
+ * Available at: http://bigwww.epfl.ch/publications/kirshner1301.html
+ * 
+ * [2] A. Griffa, N. Garin, D. Sage
+ * Comparison of Deconvolution Software in 3D Microscopy: A User Point of View
+ * G.I.T. Imaging & Microscopy, vol. 12, no. 1, pp. 43-45, March 2010.
+ * Available at: http://bigwww.epfl.ch/publications/griffa1001.html
+ *
+ * Conditions of use:
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ */
+
+/**
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of PSFGenerator.
+ * 
+ * PSFGenerator is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * PSFGenerator is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * PSFGenerator. If not, see <http://www.gnu.org/licenses/>.
+ */
+package psf.vri_gibsonlanni;
+
+import java.util.Arrays;
+
+import psf.DiffractionIntegrand;
+
+/**
+ * Optical path difference of the specimen layers, which depends on rho but
+ * not on the plane. The sum over the layers is computed once per run on the
+ * dyadic grid of DiffractionIntegrand, hence the cost of an evaluation does
+ * not depend on the depth of the particle. Between the nodes of the grid
+ * the table is interpolated by cubic Hermite polynomials (Catmull-Rom).
+ * 
+ * The term sqrt(|n(l) - NA*rho|) of every layer has a kink at rho = n(l)/NA,
+ * where the interpolation error is not bounded by the smoothness of the
+ * sum. The kinks are sorted once. Off the grid, in the intervals closer
+ * than MARGIN intervals to a kink, the terms of the kinks of the window,
+ * found by binary search, are removed from the nodes, the remainder is
+ * interpolated and the terms are added back exactly at rho; the cost
+ * follows the number of kinks of the window, not the number of layers.
+ * The error of the interpolation is below 3E-7 of the largest optical path
+ * difference of the specimen, for the three variations of the index and
+ * particles up to 10 um deep.
+ */
+public class VRIGLTable {
+
+	// Intervals around a kink whose terms are evaluated exactly
+	private static final int	MARGIN	= 8;
+
+	private double			a;
+	private double			scale;
+	private double[]		opd;
+
+	// Positions of the kinks, in increasing order, and the intervals closer
+	// than MARGIN to one of them
+	private double[]		kinks;
+	private boolean[]		exact;
+	private VRIGLIntegrand	integrand;
+
+	public VRIGLTable(VRIGLIntegrand integrand) {
+		this.integrand = integrand;
+		int n = (1 << DiffractionIntegrand.TABLE_LEVELS) + 1;
+		a = integrand.getLowerLimit();
+		double b = integrand.getUpperLimit();
+		scale = (n - 1) / (b - a);
+		opd = new double[n];
+		for (int i = 0; i < n; i++)
+			opd[i] = integrand.getSampleOPD(a + i * (b - a) / (n - 1));
+
+		kinks = integrand.getKinks();
+		Arrays.sort(kinks);
+		exact = new boolean[n - 1];
+		for (double kink : kinks) {
+			int i = (int) Math.floor((kink - a) * scale);
+			for (int k = i - MARGIN; k <= i + MARGIN; k++)
+				if (k >= 0 && k < n - 1)
+					exact[k] = true;
+		}
+	}
+
+	/**
+	 * Value at the node 'node' of the dyadic grid.
+	 */
+	public double get(int node) {
+		return opd[node];
+	}
+
+	/**
+	 * Value at rho, interpolated.
+	 */
+	public double interpolate(double rho) {
+		int last = opd.length - 1;
+		double t = (rho - a) * scale;
+		if (t <= 0.0)
+			return opd[0];
+		if (t >= last)
+			return opd[last];
+		int i = (int) t;
+		t -= i;
+
+		// Kinks of the window of the interval, from lo to hi - 1
+		int lo = 0;
+		int hi = 0;
+		if (exact[i]) {
+			lo = search(a + (i - MARGIN) / scale);
+			hi = search(a + (i + MARGIN + 1) / scale);
+		}
+		double f0 = getSmooth(i, lo, hi);
+		double f1 = getSmooth(i + 1, lo, hi);
+		// Centered differences, one-sided of second order at the ends
+		double d0 = (i > 0 ? 0.5 * (f1 - getSmooth(i - 1, lo, hi)) : 0.5 * (-3 * f0 + 4 * f1 - getSmooth(i + 2, lo, hi)));
+		double d1 = (i + 2 <= last ? 0.5 * (getSmooth(i + 2, lo, hi) - f0) : 0.5 * (3 * f1 - 4 * f0 + getSmooth(i - 1, lo, hi)));
+		double t2 = t * t;
+		double t3 = t2 * t;
+		double value = (2 * t3 - 3 * t2 + 1) * f0 + (t3 - 2 * t2 + t) * d0 + (-2 * t3 + 3 * t2) * f1 + (t3 - t2) * d1;
+		for (int k = lo; k < hi; k++)
+			value += integrand.getLayerOPD(kinks[k], rho);
+		return value;
+	}
+
+	// Value at the node without the terms of the kinks lo to hi - 1
+	private double getSmooth(int node, int lo, int hi) {
+		double value = opd[node];
+		double rho = a + node / scale;
+		for (int k = lo; k < hi; k++)
+			value -= integrand.getLayerOPD(kinks[k], rho);
+		return value;
+	}
+
+	// Index of the first kink at or after rho
+	private int search(double rho) {
+		int lo = 0;
+		int hi = kinks.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (kinks[mid] < rho)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+}
@@ -45,6 +45,8 @@
 package psfgenerator;
 
 import java.awt.CardLayout;
+import java.awt.Component;
+import java.awt.Container;
 import java.awt.Font;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
@@ -62,6 +64,7 @@ import javax.swing.JLabel;
 import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.JTabbedPane;
 import javax.swing.ListSelectionModel;
 import javax.swing.event.ChangeEvent;
@@ -82,7 +85,9 @@ import bilib.commons.job.runnable.PoolResponder;
 import bilib.commons.settings.Settings;
 import bilib.commons.settings.SettingsFileDialog;
 import bilib.commons.utils.WebBrowser;
+import psf.ExecutionPolicy;
 import psf.PSF;
+import psf.RadialPSF;
 
 public class MainPanel extends JPanel implements ListSelectionListener, ActionListener, ChangeListener {
 
@@ -102,6 +107,7 @@ public class MainPanel extends JPanel implements ListSelectionListener, ActionLi
 	private JComboBox							cmbType;
 	private JComboBox							cmbLUT;
 	private JComboBox							cmbScale		= new JComboBox(new String[] { "Linear", "Log", "Sqrt", "Decibel" });
+	private JComboBox							cmbCutoff		= new JComboBox(new String[] { "Off", "1E-6", "1E-5", "1E-4", "1E-3" });
 
 	private JPanel								pnPSF;
 	private JList						list[]			= new JList[3];
@@ -113,9 +119,23 @@ public class MainPanel extends JPanel implements ListSelectionListener, ActionLi
 	private PoolResponder						responder;
 	private HashMap<String, JButton>			buttons;
 	private JPanel								pnApplication;
+	private ExecutionPolicy						policy;
+	private String								checkpoint;
+	private boolean								resume;
+	private boolean								verbose;
+	private String								mirror;
+	private boolean								filon;
+	private boolean								axial;
 
 	public MainPanel(Settings settingsExt, HashMap<String, JButton> buttons, ArrayList<PSF> psfs, String luts[], String types[], PoolResponder responder) {
 		this.settings = (settingsExt == null ? new Settings("PSFGenerator", "config.txt") : settingsExt);
+		this.policy = ExecutionPolicy.load(settings);
+		this.checkpoint = settings.loadValue("Checkpoint", "");
+		this.resume = settings.loadValue("ResumeIntegration", "false").trim().equalsIgnoreCase("true");
+		this.verbose = settings.loadValue("Verbose", "false").trim().equalsIgnoreCase("true");
+		this.mirror = settings.loadValue("Mirror", "on").trim().toLowerCase();
+		this.filon = settings.loadValue("Filon", "true").trim().equalsIgnoreCase("true");
+		this.axial = settings.loadValue("AxialInterpolation", "false").trim().equalsIgnoreCase("true");
 		this.psfs = psfs;
 		this.buttons = buttons;
 		for (PSF psf : psfs)
@@ -164,6 +184,7 @@ public class MainPanel extends JPanel implements ListSelectionListener, ActionLi
 
 		for (PSF psf : psfs) {
 			JPanel panel = psf.buildPanel(settings);
+			watch(panel, new ParameterListener(psf));
 			HTMLPane info = new HTMLPane();
 			info.append(psf.getDescription());
 			DoubleScrollablePanel card = new DoubleScrollablePanel(105, info, 80, panel);
@@ -209,6 +230,9 @@ public class MainPanel extends JPanel implements ListSelectionListener, ActionLi
 		pnOut.place(1, 2, spnNY);
 		pnOut.place(1, 3, spnNZ);
 
+		pnOut.place(2, 0, "Radial cut-off");
+		pnOut.place(2, 1, cmbCutoff);
+
 		pnOut.place(3, 0, new JLabel("Display"));
 		pnOut.place(3, 1, cmbScale);
 		if (cmbType != null)
@@ -263,6 +287,9 @@ public class MainPanel extends JPanel implements ListSelectionListener, ActionLi
 		spnLambda.addChangeListener(this);
 		spnResLateral.addChangeListener(this);
 		spnResAxial.addChangeListener(this);
+		spnNX.addChangeListener(this);
+		spnNY.addChangeListener(this);
+		spnNZ.addChangeListener(this);
 		list[0].addListSelectionListener(this);
 		list[1].addListSelectionListener(this);
 		list[2].addListSelectionListener(this);
@@ -279,6 +306,7 @@ public class MainPanel extends JPanel implements ListSelectionListener, ActionLi
 		if (cmbLUT != null)
 			settings.record("LUT", cmbLUT, "Special PSF");
 		settings.record("Scale", cmbScale, "Linear");
+		settings.record("Cutoff", cmbCutoff, "Off");
 		settings.loadRecordedItems();
 		this.setSelectedPSF(settings.loadValue("PSF-shortname", "BW"));
 		updateInterface();
@@ -289,6 +317,91 @@ public class MainPanel extends JPanel implements ListSelectionListener, ActionLi
 		return psf;
 	}
 
+	/**
+	 * Thread budget of the runs, read from the settings.
+	 */
+	public ExecutionPolicy getExecutionPolicy() {
+		return policy;
+	}
+
+	public void setExecutionPolicy(ExecutionPolicy policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * Directory of the checkpoints of the runs, read from the settings; empty
+	 * if disabled.
+	 */
+	public String getCheckpointDirectory() {
+		return checkpoint;
+	}
+
+	public void setCheckpointDirectory(String checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Resumption of the adaptive Simpson refinement by the next run at a
+	 * higher accuracy, read from the settings; disabled by default.
+	 */
+	public boolean isResumeIntegration() {
+		return resume;
+	}
+
+	public void setResumeIntegration(boolean resume) {
+		this.resume = resume;
+	}
+
+	/**
+	 * Report of the details of the methods at the end of a run, read from
+	 * the settings; a summary line only by default.
+	 */
+	public boolean isVerbose() {
+		return verbose;
+	}
+
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Use of the axial symmetry of the radial models, read from the
+	 * settings: "on" to compute half of the planes, the default, "verify" to
+	 * compute all of them and report the deviation from the mirror, "off".
+	 */
+	public String getMirror() {
+		return mirror;
+	}
+
+	public void setMirror(String mirror) {
+		this.mirror = (mirror == null ? "on" : mirror.trim().toLowerCase());
+	}
+
+	/**
+	 * Filon-type quadrature of the oscillatory cases of the adaptive Simpson,
+	 * read from the settings; enabled by default.
+	 */
+	public boolean isFilon() {
+		return filon;
+	}
+
+	public void setFilon(boolean filon) {
+		this.filon = filon;
+	}
+
+	/**
+	 * Axial interpolation of the radial models, an adaptive subset of the
+	 * planes computed and the others reconstructed, read from the settings;
+	 * disabled by default.
+	 */
+	public boolean isAxialInterpolation() {
+		return axial;
+	}
+
+	public void setAxialInterpolation(boolean axial) {
+		this.axial = axial;
+	}
+
 	public void success() {
 		progress.progress(100, "End of PSF");
 	}
@@ -301,6 +414,13 @@ public class MainPanel extends JPanel implements ListSelectionListener, ActionLi
 	}
 
 	public void onClosed() {
+		policy.store(settings);
+		settings.storeValue("Checkpoint", (checkpoint == null ? "" : checkpoint));
+		settings.storeValue("ResumeIntegration", "" + resume);
+		settings.storeValue("Verbose", "" + verbose);
+		settings.storeValue("Mirror", mirror);
+		settings.storeValue("Filon", "" + filon);
+		settings.storeValue("AxialInterpolation", "" + axial);
 		list[0].removeListSelectionListener(this);
 		list[1].removeListSelectionListener(this);
 		list[2].removeListSelectionListener(this);
@@ -312,6 +432,22 @@ public class MainPanel extends JPanel implements ListSelectionListener, ActionLi
 		return (cmbType == null ? 0 : cmbType.getSelectedIndex());
 	}
 
+	/**
+	 * Threshold of the radial cut-off of the radial models, relative to the
+	 * maximum of the plane; 0 if it is off.
+	 */
+	public double getCutoff() {
+		String value = "" + cmbCutoff.getSelectedItem();
+		if (value.equals("Off"))
+			return 0;
+		try {
+			return Double.parseDouble(value);
+		}
+		catch (NumberFormatException ex) {
+			return 0;
+		}
+	}
+
 	public int getSelectedLUT() {
 		return (cmbLUT == null ? 0 : cmbLUT.getSelectedIndex());
 	}
@@ -402,6 +538,17 @@ public class MainPanel extends JPanel implements ListSelectionListener, ActionLi
 		psf.setOpticsParameters(spnNA.get(), spnLambda.get());
 		psf.setResolutionParameters(spnResLateral.get(), spnResAxial.get());
 		psf.setOutputParameters(nx, ny, nz, type, scale);
+		psf.setExecutionPolicy(policy);
+		psf.setCheckpointDirectory(checkpoint);
+		if (psf instanceof RadialPSF) {
+			((RadialPSF) psf).setResumeIntegration(resume);
+			((RadialPSF) psf).setVerbose(verbose);
+			((RadialPSF) psf).setCutoff(getCutoff());
+			((RadialPSF) psf).setMirror(!mirror.equals("off"));
+			((RadialPSF) psf).setVerifyMirror(mirror.equals("verify"));
+			((RadialPSF) psf).setFilon(filon);
+			((RadialPSF) psf).setAxialInterpolation(axial);
+		}
 		Pool pool = new Pool("Main", responder);
 		pool.register(psf);
 		pool.execute(mode);
@@ -417,9 +564,50 @@ public class MainPanel extends JPanel implements ListSelectionListener, ActionLi
 			CardLayout cl = (CardLayout) (pnPSF.getLayout());
 			cl.show(pnPSF, cards.get(getSelectedPSF()).getName());
 		}
+		else {
+			// Parameters shared by all the models
+			for (PSF psf : psfs)
+				psf.resetCompletedPlanes();
+		}
 		updateInterface();
 	}
 
+	// Listens to the spinners and the combo boxes of the panel and of its
+	// sub-panels
+	private void watch(Container container, ParameterListener listener) {
+		for (Component component : container.getComponents()) {
+			if (component instanceof JSpinner)
+				((JSpinner) component).addChangeListener(listener);
+			else if (component instanceof JComboBox)
+				((JComboBox) component).addActionListener(listener);
+			else if (component instanceof Container)
+				watch((Container) component, listener);
+		}
+	}
+
+	/**
+	 * Releases the planes kept by a model from an aborted run when one of its
+	 * parameters changes.
+	 */
+	private class ParameterListener implements ChangeListener, ActionListener {
+
+		private PSF	psf;
+
+		public ParameterListener(PSF psf) {
+			this.psf = psf;
+		}
+
+		@Override
+		public void stateChanged(ChangeEvent event) {
+			psf.resetCompletedPlanes();
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent event) {
+			psf.resetCompletedPlanes();
+		}
+	}
+
 	private void updateInterface() {
 		double z = 2 * spnLambda.get() / (spnNA.get() * spnNA.get());
 		String znm = (new DecimalFormat("###.#")).format(z);